@@ -0,0 +1,71 @@
+package com.example.llm.capture;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shape and timing of one inbound chat request and the upstream calls it made.
+ * No message content is kept, only roles and lengths, so captures can be shared safely.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CaptureRecord {
+    
+    private long id;
+    
+    private long timestamp;
+    
+    // Arrival time relative to the start of the capture
+    private long offsetMicros;
+    
+    private String provider;
+    
+    private String model;
+    
+    private String taskHint;
+    
+    private List<String> roles;
+    
+    private List<Integer> contentLengths;
+    
+    private Integer maxTokens;
+    
+    private Double temperature;
+    
+    private String outcome;
+    
+    private long latencyMicros;
+    
+    private List<UpstreamCall> upstream = new ArrayList<>();
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class UpstreamCall {
+        private String provider;
+        
+        private String model;
+        
+        // HTTP status returned by the provider, 0 for transport failures and timeouts
+        private int status;
+        
+        private long latencyMicros;
+        
+        private Integer promptTokens;
+        
+        private Integer completionTokens;
+        
+        private Integer responseChars;
+        
+        private String finishReason;
+    }
+}
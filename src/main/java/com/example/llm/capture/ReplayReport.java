@@ -0,0 +1,91 @@
+package com.example.llm.capture;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Latency, throughput and allocation summary of one replay run.
+ */
+@Data
+@NoArgsConstructor
+public class ReplayReport {
+    
+    private String label;
+    
+    private double rateMultiplier;
+    
+    private int requests;
+    
+    private int errors;
+    
+    private long durationMillis;
+    
+    private double throughputPerSecond;
+    
+    private double p50Millis;
+    
+    private double p90Millis;
+    
+    private double p99Millis;
+    
+    private double maxMillis;
+    
+    // Allocation on the target service, from its jvm.gc.memory.allocated metric; null if unavailable
+    private Double allocatedMegabytes;
+    
+    private Double allocationRateMegabytesPerSecond;
+    
+    static ReplayReport of(String label, double rateMultiplier, long[] latencyMicros, int errors, long durationMillis) {
+        ReplayReport report = new ReplayReport();
+        report.setLabel(label);
+        report.setRateMultiplier(rateMultiplier);
+        report.setRequests(latencyMicros.length);
+        report.setErrors(errors);
+        report.setDurationMillis(durationMillis);
+        report.setThroughputPerSecond(durationMillis > 0 ? latencyMicros.length * 1000.0 / durationMillis : 0);
+        
+        long[] sorted = latencyMicros.clone();
+        Arrays.sort(sorted);
+        report.setP50Millis(percentile(sorted, 0.50));
+        report.setP90Millis(percentile(sorted, 0.90));
+        report.setP99Millis(percentile(sorted, 0.99));
+        report.setMaxMillis(sorted.length > 0 ? sorted[sorted.length - 1] / 1000.0 : 0);
+        return report;
+    }
+    
+    static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+    
+    /**
+     * Print a side-by-side comparison of two runs, with the relative change of the candidate.
+     */
+    public static void compare(ReplayReport baseline, ReplayReport candidate, PrintStream out) {
+        out.printf("%-24s %14s %14s %9s%n", "metric", baseline.getLabel(), candidate.getLabel(), "change");
+        row(out, "requests", baseline.getRequests(), candidate.getRequests());
+        row(out, "errors", baseline.getErrors(), candidate.getErrors());
+        row(out, "throughput (req/s)", baseline.getThroughputPerSecond(), candidate.getThroughputPerSecond());
+        row(out, "p50 (ms)", baseline.getP50Millis(), candidate.getP50Millis());
+        row(out, "p90 (ms)", baseline.getP90Millis(), candidate.getP90Millis());
+        row(out, "p99 (ms)", baseline.getP99Millis(), candidate.getP99Millis());
+        row(out, "max (ms)", baseline.getMaxMillis(), candidate.getMaxMillis());
+        if (baseline.getAllocationRateMegabytesPerSecond() != null 
+                && candidate.getAllocationRateMegabytesPerSecond() != null) {
+            row(out, "allocated (MB)", baseline.getAllocatedMegabytes(), candidate.getAllocatedMegabytes());
+            row(out, "allocation (MB/s)", baseline.getAllocationRateMegabytesPerSecond(), 
+                    candidate.getAllocationRateMegabytesPerSecond());
+        }
+    }
+    
+    private static void row(PrintStream out, String metric, double baseline, double candidate) {
+        String change = baseline != 0 ? String.format("%+.1f%%", (candidate - baseline) * 100.0 / baseline) : "n/a";
+        out.printf("%-24s %14.2f %14.2f %9s%n", metric, baseline, candidate, change);
+    }
+}
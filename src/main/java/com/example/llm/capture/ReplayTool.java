@@ -0,0 +1,250 @@
+package com.example.llm.capture;
+
+import com.example.llm.dto.ChatRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Plays a {@link TrafficCapture} back against a running instance of the service and compares runs.
+ * <p>
+ * {@code replay} starts a {@link StubProvider} that reproduces the recorded upstream latencies and
+ * payload sizes, then sends synthetic requests with the captured shapes at the original arrival
+ * times divided by {@code --rate}. The service under test must point a provider at the stub, e.g.
+ * {@code --llm.providers.openai.base-url=http://localhost:9099 --llm.providers.openai.api-key=replay}.
+ * {@code compare} prints two saved reports side by side.
+ * <pre>
+ * ReplayTool replay --capture capture/ --target http://localhost:8080 [--rate 2.0] [--stub-port 9099]
+ *                   [--label candidate] [--out candidate.json]
+ * ReplayTool compare baseline.json candidate.json
+ * </pre>
+ */
+public final class ReplayTool {
+    
+    private static final String FILLER = "lorem ipsum dolor sit amet consectetur adipiscing elit ";
+    private static final String CHAT_PATH = "/api/v1/llm/chat/completions";
+    private static final String ALLOCATION_METRIC = "/actuator/metrics/jvm.gc.memory.allocated";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    
+    private ReplayTool() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        ReplayTool tool = new ReplayTool();
+        if ("compare".equals(args[0]) && args.length == 3) {
+            ReplayReport baseline = tool.objectMapper.readValue(Paths.get(args[1]).toFile(), ReplayReport.class);
+            ReplayReport candidate = tool.objectMapper.readValue(Paths.get(args[2]).toFile(), ReplayReport.class);
+            ReplayReport.compare(baseline, candidate, System.out);
+        } else if ("replay".equals(args[0])) {
+            Map<String, String> options = options(args);
+            if (!options.containsKey("capture") || !options.containsKey("target")) {
+                usage();
+                return;
+            }
+            ReplayReport report = tool.replay(
+                    readCapture(Paths.get(options.get("capture")), tool.objectMapper),
+                    options.get("target"),
+                    Double.parseDouble(options.getOrDefault("rate", "1.0")),
+                    Integer.parseInt(options.getOrDefault("stub-port", "9099")),
+                    options.getOrDefault("label", "run"));
+            String json = tool.objectMapper.writeValueAsString(report);
+            System.out.println(json);
+            if (options.containsKey("out")) {
+                Files.write(Paths.get(options.get("out")), json.getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            usage();
+        }
+    }
+    
+    ReplayReport replay(List<CaptureRecord> records, String target, double rate, int stubPort, String label) 
+            throws IOException {
+        ConnectionProvider connections = ConnectionProvider.builder("replay")
+                .maxConnections(1024)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient client = WebClient.builder()
+                .baseUrl(target)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+        
+        long firstOffset = records.stream().mapToLong(CaptureRecord::getOffsetMicros).min().orElse(0);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+        
+        try (StubProvider stub = new StubProvider(stubPort, records, objectMapper)) {
+            Double allocatedBefore = allocatedBytes(client);
+            long start = System.nanoTime();
+            
+            Flux.fromIterable(records)
+                    .flatMap(record -> Mono.delay(Duration.ofNanos(
+                                    (long) ((record.getOffsetMicros() - firstOffset) * 1000 / rate)))
+                            .then(send(client, record, latencies, errors)), Math.max(1, records.size()))
+                    .blockLast();
+            
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Double allocatedAfter = allocatedBytes(client);
+            
+            long[] samples = latencies.stream().mapToLong(Long::longValue).toArray();
+            ReplayReport report = ReplayReport.of(label, rate, samples, errors.get(), durationMillis);
+            if (allocatedBefore != null && allocatedAfter != null && durationMillis > 0) {
+                double megabytes = (allocatedAfter - allocatedBefore) / (1024 * 1024);
+                report.setAllocatedMegabytes(megabytes);
+                report.setAllocationRateMegabytesPerSecond(megabytes * 1000 / durationMillis);
+            }
+            return report;
+        } finally {
+            connections.dispose();
+        }
+    }
+    
+    private Mono<Void> send(WebClient client, CaptureRecord record, 
+                            ConcurrentLinkedQueue<Long> latencies, AtomicInteger errors) {
+        ChatRequest request = toRequest(record);
+        return Mono.defer(() -> {
+            long sent = System.nanoTime();
+            return client.post()
+                    .uri(builder -> {
+                        builder.path(CHAT_PATH);
+                        if (record.getProvider() != null) {
+                            builder.queryParam("provider", record.getProvider());
+                        }
+                        return builder.build();
+                    })
+                    .headers(headers -> {
+                        if (record.getTaskHint() != null) {
+                            headers.set("X-Task-Hint", record.getTaskHint());
+                        }
+                    })
+                    .bodyValue(request)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .doOnError(error -> errors.incrementAndGet())
+                    .doFinally(signal -> latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent)))
+                    .onErrorResume(error -> Mono.empty())
+                    .then();
+        });
+    }
+    
+    static ChatRequest toRequest(CaptureRecord record) {
+        List<ChatRequest.Message> messages = new ArrayList<>();
+        List<String> roles = record.getRoles() != null ? record.getRoles() : new ArrayList<>();
+        for (int i = 0; i < roles.size(); i++) {
+            int length = record.getContentLengths() != null && i < record.getContentLengths().size() 
+                    ? record.getContentLengths().get(i) : 1;
+            messages.add(ChatRequest.Message.builder()
+                    .role(roles.get(i))
+                    .content(filler(Math.max(1, length)))
+                    .build());
+        }
+        return ChatRequest.builder()
+                .messages(messages)
+                .model(record.getModel())
+                .maxTokens(record.getMaxTokens())
+                .temperature(record.getTemperature())
+                .user(StubProvider.USER_PREFIX + record.getId())
+                .build();
+    }
+    
+    static String filler(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(FILLER, 0, Math.min(FILLER.length(), length - builder.length()));
+        }
+        return builder.toString();
+    }
+    
+    static List<CaptureRecord> readCapture(Path path, ObjectMapper objectMapper) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.list(path)) {
+                files = stream.filter(file -> file.getFileName().toString().startsWith("capture-"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        } else {
+            files = new ArrayList<>();
+            files.add(path);
+        }
+        
+        List<CaptureRecord> records = new ArrayList<>();
+        for (Path file : files) {
+            InputStream in = Files.newInputStream(file);
+            if (file.toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        records.add(objectMapper.readValue(line, CaptureRecord.class));
+                    }
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong(CaptureRecord::getOffsetMicros));
+        return records;
+    }
+    
+    private Double allocatedBytes(WebClient client) {
+        try {
+            JsonNode metric = client.get()
+                    .uri(ALLOCATION_METRIC)
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block(Duration.ofSeconds(5));
+            return metric != null ? metric.path("measurements").path(0).path("value").asDouble() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].startsWith("--")) {
+                options.put(args[i].substring(2), args[i + 1]);
+            }
+        }
+        return options;
+    }
+    
+    private static void usage() {
+        System.err.println("Usage:");
+        System.err.println("  ReplayTool replay --capture <file|dir> --target <url> [--rate <multiplier>]"
+                + " [--stub-port <port>] [--label <name>] [--out <report.json>]");
+        System.err.println("  ReplayTool compare <baseline.json> <candidate.json>");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.llm.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process OpenAI-compatible provider that answers {@code /chat/completions} with the latency,
+ * status and payload size recorded in a capture. Requests are matched to capture records through
+ * the {@code user} field, which {@link ReplayTool} sets to {@code replay-<id>}.
+ */
+@Slf4j
+public class StubProvider implements Closeable {
+    
+    static final String USER_PREFIX = "replay-";
+    
+    private final ObjectMapper objectMapper;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Deque<CaptureRecord.UpstreamCall>> calls = new ConcurrentHashMap<>();
+    
+    public StubProvider(int port, List<CaptureRecord> records, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        for (CaptureRecord record : records) {
+            calls.put(USER_PREFIX + record.getId(), new ArrayDeque<>(record.getUpstream()));
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.server.createContext("/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readTree(body);
+        }
+        CaptureRecord.UpstreamCall call = nextCall(request.path("user").asText(""));
+        
+        try {
+            TimeUnit.MICROSECONDS.sleep(call.getLatencyMicros());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        int status = call.getStatus() == 200 ? 200 : call.getStatus() == 0 ? 504 : call.getStatus();
+        byte[] payload = status == 200 
+                ? objectMapper.writeValueAsBytes(completion(request, call)) 
+                : "{\"error\":{\"message\":\"replayed upstream failure\"}}".getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+    
+    private CaptureRecord.UpstreamCall nextCall(String user) {
+        Deque<CaptureRecord.UpstreamCall> queue = calls.get(user);
+        CaptureRecord.UpstreamCall call = null;
+        if (queue != null) {
+            synchronized (queue) {
+                call = queue.poll();
+            }
+        }
+        if (call == null) {
+            // Unknown or exhausted request: answer immediately with a minimal completion
+            call = CaptureRecord.UpstreamCall.builder().status(200).responseChars(16).finishReason("stop").build();
+        }
+        return call;
+    }
+    
+    private ObjectNode completion(JsonNode request, CaptureRecord.UpstreamCall call) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "chatcmpl-replay");
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", call.getModel() != null ? call.getModel() : request.path("model").asText());
+        
+        ArrayNode choices = response.putArray("choices");
+        ObjectNode choice = choices.addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", ReplayTool.filler(call.getResponseChars() != null ? call.getResponseChars() : 0));
+        choice.put("finish_reason", call.getFinishReason() != null ? call.getFinishReason() : "stop");
+        
+        if (call.getPromptTokens() != null || call.getCompletionTokens() != null) {
+            int prompt = call.getPromptTokens() != null ? call.getPromptTokens() : 0;
+            int completion = call.getCompletionTokens() != null ? call.getCompletionTokens() : 0;
+            ObjectNode usage = response.putObject("usage");
+            usage.put("prompt_tokens", prompt);
+            usage.put("completion_tokens", completion);
+            usage.put("total_tokens", prompt + completion);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.llm.capture;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.example.llm.journal.AsyncNdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the timing and redacted shape of inbound chat requests and their upstream calls,
+ * for later playback with {@link ReplayTool}. Writing goes through an {@link AsyncNdjsonWriter}
+ * so capture can stay on under production load.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrafficCapture {
+    
+    private static final String CONTEXT_KEY = TrafficCapture.class.getName();
+    
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile AsyncNdjsonWriter writer;
+    private long startNanos;
+    
+    @PostConstruct
+    public void start() {
+        LlmProperties.Capture settings = llmProperties.getCapture();
+        if (settings == null || !Boolean.TRUE.equals(settings.getEnabled())) {
+            return;
+        }
+        
+        startNanos = System.nanoTime();
+        AsyncNdjsonWriter captureWriter = new AsyncNdjsonWriter(
+                Paths.get(settings.getDirectory()),
+                "capture",
+                settings.getBufferSize(),
+                settings.getMaxFileSizeMb() * 1024L * 1024L,
+                objectMapper
+        );
+        FunctionCounter.builder("llm.capture.dropped", captureWriter, AsyncNdjsonWriter::getDropped)
+                .description("Captured requests dropped because the buffer was full")
+                .register(meterRegistry);
+        
+        writer = captureWriter;
+        log.info("Traffic capture enabled in '{}'", settings.getDirectory());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        AsyncNdjsonWriter captureWriter = writer;
+        writer = null;
+        if (captureWriter != null) {
+            captureWriter.close();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return writer != null;
+    }
+    
+    /**
+     * Wrap an inbound exchange so that its arrival, outcome and upstream calls are captured.
+     */
+    public Mono<ChatResponse> capture(ChatRequest request, String provider, String taskHint, Mono<ChatResponse> exchange) {
+        if (writer == null) {
+            return exchange;
+        }
+        return Mono.defer(() -> {
+            long arrival = System.nanoTime();
+            CaptureRecord record = shape(request, provider, taskHint, arrival);
+            return exchange
+                    .doOnSuccess(response -> finish(record, "success", arrival))
+                    .doOnError(error -> finish(record, "error", arrival))
+                    .doOnCancel(() -> finish(record, "cancelled", arrival))
+                    .contextWrite(context -> context.put(CONTEXT_KEY, record));
+        });
+    }
+    
+    /**
+     * Attach one upstream call to the capture record carried in the subscriber context, if any.
+     */
+    public void recordUpstream(ContextView context, String provider, ChatRequest sent, 
+                               ChatResponse response, Throwable error, long latencyNanos) {
+        if (!context.hasKey(CONTEXT_KEY)) {
+            return;
+        }
+        CaptureRecord record = context.get(CONTEXT_KEY);
+        CaptureRecord.UpstreamCall.UpstreamCallBuilder call = CaptureRecord.UpstreamCall.builder()
+                .provider(provider)
+                .model(sent.getModel())
+                .latencyMicros(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (error == null) {
+            call.status(200);
+            if (response.getUsage() != null) {
+                call.promptTokens(response.getUsage().getPromptTokens())
+                        .completionTokens(response.getUsage().getCompletionTokens());
+            }
+            if (response.getChoices() != null && !response.getChoices().isEmpty()) {
+                ChatResponse.Choice choice = response.getChoices().get(0);
+                call.finishReason(choice.getFinishReason());
+                if (choice.getMessage() != null && choice.getMessage().getContent() != null) {
+                    call.responseChars(choice.getMessage().getContent().length());
+                }
+            }
+        } else if (error instanceof WebClientResponseException) {
+            call.status(((WebClientResponseException) error).getRawStatusCode());
+        }
+        // Upstream calls of one request happen one after another, never concurrently
+        synchronized (record) {
+            record.getUpstream().add(call.build());
+        }
+    }
+    
+    private CaptureRecord shape(ChatRequest request, String provider, String taskHint, long arrival) {
+        CaptureRecord record = new CaptureRecord();
+        record.setId(sequence.incrementAndGet());
+        record.setTimestamp(System.currentTimeMillis());
+        record.setOffsetMicros(TimeUnit.NANOSECONDS.toMicros(arrival - startNanos));
+        record.setProvider(provider);
+        record.setModel(request.getModel());
+        record.setTaskHint(taskHint);
+        record.setMaxTokens(request.getMaxTokens());
+        record.setTemperature(request.getTemperature());
+        
+        List<String> roles = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        if (request.getMessages() != null) {
+            for (ChatRequest.Message message : request.getMessages()) {
+                roles.add(message.getRole());
+                lengths.add(message.getContent() != null ? message.getContent().length() : 0);
+            }
+        }
+        record.setRoles(roles);
+        record.setContentLengths(lengths);
+        return record;
+    }
+    
+    private void finish(CaptureRecord record, String outcome, long arrival) {
+        record.setOutcome(outcome);
+        record.setLatencyMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - arrival));
+        AsyncNdjsonWriter captureWriter = writer;
+        if (captureWriter != null) {
+            captureWriter.offer(record);
+        }
+    }
+}
@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -16,6 +20,15 @@ public class LlmProperties {
     private Integer maxTokens = 1000;
     private Double temperature = 0.7;
     private Boolean stream = false;
+    private Routing routing = new Routing();
+    private Embeddings embeddings = new Embeddings();
+    private Journal journal = new Journal();
+    private Capture capture = new Capture();
+    private Compaction compaction = new Compaction();
+    private Reload reload = new Reload();
+    private Health health = new Health();
+    private Usage usage = new Usage();
+    private Documents documents = new Documents();
     
     @Data
     public static class ProviderConfig {
@@ -23,6 +36,165 @@ public class LlmProperties {
         private String baseUrl;
         private String apiKey;
         private String defaultModel;
+        private String embeddingModel;
         private Integer timeout = 30000;
+        private Warmup warmup = new Warmup();
+    }
+    
+    /**
+     * Rules for sending requests without an explicit model to a cheaper or faster model.
+     * Rules are evaluated in order and the first matching rule wins.
+     */
+    @Data
+    public static class Routing {
+        private Boolean enabled = false;
+        private List<RoutingRule> rules = new ArrayList<>();
+    }
+    
+    @Data
+    public static class RoutingRule {
+        private String name;
+        private Integer minPromptTokens;
+        private Integer maxPromptTokens;
+        private Integer maxCompletionTokens;
+        private List<String> taskHints = new ArrayList<>();
+        private List<RoutingTarget> targets = new ArrayList<>();
+        private RoutingTarget escalateTo;
+    }
+    
+    @Data
+    public static class RoutingTarget {
+        private String provider;
+        private String model;
+    }
+    
+    /**
+     * Micro-batching of concurrent embedding requests for the same provider and model.
+     */
+    @Data
+    public static class Embeddings {
+        private Integer batchWindowMs = 5;
+        private Integer maxBatchSize = 64;
+    }
+    
+    /**
+     * Asynchronous request/response journal. Metadata is recorded for every request;
+     * prompt and response bodies only for the sampled fraction, after redaction.
+     */
+    @Data
+    public static class Journal {
+        private Boolean enabled = false;
+        private String directory = "journal";
+        private Integer bufferSize = 8192;
+        private Integer maxFileSizeMb = 64;
+        private Double sampleRate = 0.01;
+        private List<String> redactPatterns = new ArrayList<>(Arrays.asList(
+                "sk-[A-Za-z0-9_-]{8,}",
+                "(?i)bearer\\s+[A-Za-z0-9._-]+",
+                "[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}",
+                "\\b\\d{13,19}\\b"
+        ));
+    }
+    
+    /**
+     * Capture of request shapes and upstream timings for playback with the replay tool.
+     */
+    @Data
+    public static class Capture {
+        private Boolean enabled = false;
+        private String directory = "capture";
+        private Integer bufferSize = 8192;
+        private Integer maxFileSizeMb = 64;
+    }
+    
+    /**
+     * Prompt compaction applied before routing: system message de-duplication, whitespace
+     * clean-up and truncation to the most recent turns within a token budget. Dropped turns
+     * can optionally be replaced by a summary from a cheap model.
+     */
+    @Data
+    public static class Compaction {
+        private Boolean enabled = false;
+        private Boolean dedupeSystemMessages = true;
+        private Boolean collapseWhitespace = true;
+        private Integer maxPromptTokens;
+        private Integer keepRecentTurns;
+        private Boolean summarize = false;
+        private String summaryProvider;
+        private String summaryModel;
+        private Integer summaryMaxTokens = 256;
+    }
+    
+    /**
+     * Runtime reload of provider settings from an external YAML file layered over this configuration.
+     */
+    @Data
+    public static class Reload {
+        private String file;
+        private Boolean watch = true;
+        private Long debounceMs = 500L;
+    }
+    
+    /**
+     * Background probing of provider reachability. A provider is taken out of rotation after
+     * {@code failureThreshold} consecutive failed probes and returns on the first success.
+     */
+    @Data
+    public static class Health {
+        private Boolean enabled = true;
+        private Long intervalMs = 30000L;
+        private Long jitterMs = 5000L;
+        private Long timeoutMs = 5000L;
+        private String mode = "models";
+        private Integer failureThreshold = 2;
+    }
+    
+    /**
+     * Per-user token accounting in time buckets, flushed to append-only files, with optional token quotas.
+     */
+    @Data
+    public static class Usage {
+        private Boolean enabled = false;
+        private String directory = "usage";
+        private Long bucketMs = 3600000L;
+        private Integer retainBuckets = 48;
+        private Long flushIntervalMs = 60000L;
+        private Integer maxFileSizeMb = 64;
+        private Long quotaWindowMs = 86400000L;
+        private Long defaultTokenQuota;
+        private Map<String, Long> tokenQuotas = new HashMap<>();
+        private Integer maxUsers = 10000;
+    }
+    
+    /**
+     * Map-reduce processing of documents larger than a model's context window.
+     */
+    @Data
+    public static class Documents {
+        private Integer chunkTokens = 2000;
+        private Integer overlapTokens = 200;
+        private Integer mapConcurrency = 4;
+        private Integer reduceFanIn = 8;
+        private Integer maxChunks = 500;
+        private Integer mapMaxTokens = 512;
+        private Integer reduceMaxTokens = 1024;
+        private String defaultInstruction = "Summarize the document.";
+        private Long timeoutMs = 600000L;
+    }
+    
+    /**
+     * Keeps models of a self-hosted provider loaded: preloads them at startup, sends 1-token keep-alive
+     * requests before the server unloads an idle model, and warms models ahead of hours they are usually used.
+     */
+    @Data
+    public static class Warmup {
+        private Boolean enabled = false;
+        private List<String> preloadModels = new ArrayList<>();
+        private Long keepAliveIntervalMs = 240000L;
+        private Long unloadAfterMs = 300000L;
+        private Long idleAfterMs = 1800000L;
+        private Integer maxWarmModels = 2;
+        private Double predictMinRequests = 2.0;
+        private Long predictLeadMs = 300000L;
     }
 }
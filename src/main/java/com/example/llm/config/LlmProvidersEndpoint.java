@@ -0,0 +1,85 @@
+package com.example.llm.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Actuator endpoint ({@code llmproviders}) showing the current provider snapshot and triggering
+ * a reload from {@code llm.reload.file}. API keys are never exposed. Exposed over JMX only by
+ * default, since a reload must not be reachable over unauthenticated HTTP.
+ */
+@Component
+@Endpoint(id = "llmproviders")
+@RequiredArgsConstructor
+public class LlmProvidersEndpoint {
+    
+    private final ProviderRegistry providerRegistry;
+    
+    @ReadOperation
+    public SnapshotView snapshot() {
+        return view(providerRegistry.current());
+    }
+    
+    @WriteOperation
+    public SnapshotView reload() {
+        return view(providerRegistry.reload());
+    }
+    
+    private SnapshotView view(ProviderSnapshot snapshot) {
+        List<ProviderView> providers = new ArrayList<>();
+        snapshot.getProviders().forEach((name, settings) -> providers.add(new ProviderView(
+                name,
+                settings.isEnabled(),
+                snapshot.isAvailable(name),
+                settings.getBaseUrl(),
+                settings.getDefaultModel(),
+                settings.getTimeout().toMillis()
+        )));
+        
+        List<Long> draining = new ArrayList<>();
+        for (ProviderSnapshot retired : providerRegistry.getRetired()) {
+            draining.add(retired.getVersion());
+        }
+        
+        return new SnapshotView(
+                snapshot.getVersion(),
+                snapshot.getLoadedAt(),
+                snapshot.getSource(),
+                snapshot.getDefaultProvider(),
+                snapshot.getInFlight().get(),
+                draining,
+                providers
+        );
+    }
+    
+    @Data
+    @AllArgsConstructor
+    public static class SnapshotView {
+        private long version;
+        private long loadedAt;
+        private String source;
+        private String defaultProvider;
+        private int inFlight;
+        private List<Long> drainingVersions;
+        private List<ProviderView> providers;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    public static class ProviderView {
+        private String name;
+        private boolean enabled;
+        private boolean available;
+        private String baseUrl;
+        private String defaultModel;
+        private long timeoutMs;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.llm.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the provider configuration as immutable {@link ProviderSnapshot}s through a single
+ * atomic reference, so readers never lock. Snapshots can be reloaded at runtime from
+ * {@code llm.reload.file}, either when the file changes or through the {@code llmproviders}
+ * actuator endpoint. The file is layered over the application configuration, so it only needs
+ * to contain the settings that change.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderRegistry {
+    
+    private final LlmProperties llmProperties;
+    private final ConfigurableEnvironment environment;
+    
+    private final AtomicReference<ProviderSnapshot> current = new AtomicReference<>();
+    private final Set<ProviderSnapshot> retired = ConcurrentHashMap.newKeySet();
+    private volatile WatchService watchService;
+    
+    @PostConstruct
+    public void start() {
+        apply(llmProperties, "application");
+        
+        LlmProperties.Reload settings = llmProperties.getReload();
+        if (settings == null || !StringUtils.hasText(settings.getFile())) {
+            return;
+        }
+        Path file = Paths.get(settings.getFile()).toAbsolutePath();
+        if (Files.exists(file)) {
+            reload();
+        }
+        if (Boolean.TRUE.equals(settings.getWatch())) {
+            watch(file, settings.getDebounceMs());
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws IOException {
+        WatchService watcher = watchService;
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+    
+    public ProviderSnapshot current() {
+        return current.get();
+    }
+    
+    /**
+     * Mark the end of a request that acquired {@code snapshot}.
+     */
+    public void release(ProviderSnapshot snapshot) {
+        if (snapshot.release() == 0 && retired.remove(snapshot)) {
+            log.info("Provider configuration version {} drained", snapshot.getVersion());
+        }
+    }
+    
+    public Set<ProviderSnapshot> getRetired() {
+        return retired;
+    }
+    
+    /**
+     * Reload from {@code llm.reload.file}. The current snapshot is kept if the file is invalid.
+     * 
+     * @return the newly published snapshot
+     */
+    public synchronized ProviderSnapshot reload() {
+        LlmProperties.Reload settings = llmProperties.getReload();
+        if (settings == null || !StringUtils.hasText(settings.getFile())) {
+            throw new IllegalStateException("No reload file configured (llm.reload.file)");
+        }
+        Path file = Paths.get(settings.getFile()).toAbsolutePath();
+        
+        List<PropertySource<?>> fileSources;
+        try {
+            fileSources = new YamlPropertySourceLoader().load("llm-reload", new FileSystemResource(file));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read provider configuration " + file + ": " + e.getMessage(), e);
+        }
+        
+        MutablePropertySources sources = new MutablePropertySources();
+        fileSources.forEach(sources::addLast);
+        environment.getPropertySources().forEach(sources::addLast);
+        LlmProperties reloaded = new Binder(ConfigurationPropertySources.from(sources))
+                .bind("llm", LlmProperties.class)
+                .orElseGet(LlmProperties::new);
+        
+        return apply(reloaded, file.toString());
+    }
+    
+    /**
+     * Validate {@code properties} and publish them as the new current snapshot.
+     */
+    public synchronized ProviderSnapshot apply(LlmProperties properties, String source) {
+        validate(properties);
+        
+        ProviderSnapshot previous = current.get();
+        ProviderSnapshot next = new ProviderSnapshot(previous != null ? previous.getVersion() + 1 : 1, source, properties);
+        current.set(next);
+        
+        if (previous != null) {
+            retired.add(previous);
+            // Requests may have finished between the swap and the registration above
+            if (previous.getInFlight().get() == 0 && retired.remove(previous)) {
+                log.debug("Provider configuration version {} drained", previous.getVersion());
+            }
+            log.info("Provider configuration version {} loaded from {}", next.getVersion(), source);
+        }
+        return next;
+    }
+    
+    private static void validate(LlmProperties properties) {
+        Map<String, LlmProperties.ProviderConfig> providers = properties.getProviders();
+        if (providers == null) {
+            return;
+        }
+        providers.forEach((name, config) -> {
+            if (config == null) {
+                throw new IllegalArgumentException("Provider '" + name + "' has no configuration");
+            }
+            if (config.getTimeout() != null && config.getTimeout() <= 0) {
+                throw new IllegalArgumentException("Provider '" + name + "' timeout must be positive");
+            }
+            if (StringUtils.hasText(config.getBaseUrl())) {
+                URI uri;
+                try {
+                    uri = URI.create(config.getBaseUrl());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Provider '" + name + "' has an invalid base-url: " 
+                            + config.getBaseUrl(), e);
+                }
+                if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+                    throw new IllegalArgumentException("Provider '" + name + "' base-url must be http(s)");
+                }
+            }
+            LlmProperties.Warmup warmup = config.getWarmup();
+            if (warmup != null && Boolean.TRUE.equals(warmup.getEnabled())
+                    && (warmup.getKeepAliveIntervalMs() == null || warmup.getKeepAliveIntervalMs() <= 0)) {
+                throw new IllegalArgumentException("Provider '" + name + "' warmup keep-alive-interval-ms must be positive");
+            }
+        });
+    }
+    
+    private void watch(Path file, long debounceMs) {
+        try {
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watcher, 
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = watcher;
+        } catch (IOException e) {
+            log.warn("Cannot watch provider configuration {}: {}", file, e.getMessage());
+            return;
+        }
+        
+        Thread thread = new Thread(() -> watchLoop(file, debounceMs), "llm-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} for provider configuration changes", file);
+    }
+    
+    private void watchLoop(Path file, long debounceMs) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // Editors often write a file in several steps; wait for it to settle
+                Thread.sleep(debounceMs);
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    log.warn("Rejected provider configuration change: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Provider configuration watcher stopped");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.llm.config;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, validated view of one {@link LlmProperties.ProviderConfig} with its endpoints
+ * and authentication headers resolved up front.
+ */
+@Value
+@Builder
+public class ProviderSettings {
+    
+    String name;
+    boolean enabled;
+    boolean configured;
+    String baseUrl;
+    String defaultModel;
+    String embeddingModel;
+    Duration timeout;
+    String chatCompletionsUrl;
+    String embeddingsUrl;
+    String modelsUrl;
+    Map<String, String> headers;
+    Warmup warmup;
+    
+    public void applyHeaders(HttpHeaders target) {
+        headers.forEach(target::set);
+    }
+    
+    public boolean isWarmupEnabled() {
+        return enabled && configured && warmup.isEnabled();
+    }
+    
+    static ProviderSettings from(String name, LlmProperties.ProviderConfig config) {
+        String baseUrl = config.getBaseUrl() != null ? config.getBaseUrl().replaceAll("/+$", "") : null;
+        return ProviderSettings.builder()
+                .name(name)
+                .enabled(Boolean.TRUE.equals(config.getEnabled()))
+                .configured(StringUtils.hasText(baseUrl) && StringUtils.hasText(config.getApiKey()))
+                .baseUrl(baseUrl)
+                .defaultModel(config.getDefaultModel())
+                .embeddingModel(config.getEmbeddingModel())
+                .timeout(Duration.ofMillis(config.getTimeout() != null ? config.getTimeout() : 30000))
+                .chatCompletionsUrl(baseUrl + "/chat/completions")
+                .embeddingsUrl(baseUrl + "/embeddings")
+                .modelsUrl(baseUrl + "/models")
+                .headers(resolveHeaders(name, config.getApiKey()))
+                .warmup(copy(config.getWarmup()))
+                .build();
+    }
+    
+    private static Warmup copy(LlmProperties.Warmup warmup) {
+        LlmProperties.Warmup defaults = new LlmProperties.Warmup();
+        LlmProperties.Warmup source = warmup != null ? warmup : defaults;
+        return Warmup.builder()
+                .enabled(Boolean.TRUE.equals(source.getEnabled()))
+                .preloadModels(source.getPreloadModels() != null 
+                        ? Collections.unmodifiableList(new ArrayList<>(source.getPreloadModels())) 
+                        : Collections.emptyList())
+                .keepAliveIntervalMs(orDefault(source.getKeepAliveIntervalMs(), defaults.getKeepAliveIntervalMs()))
+                .unloadAfterMs(orDefault(source.getUnloadAfterMs(), defaults.getUnloadAfterMs()))
+                .idleAfterMs(orDefault(source.getIdleAfterMs(), defaults.getIdleAfterMs()))
+                .maxWarmModels(orDefault(source.getMaxWarmModels(), defaults.getMaxWarmModels()))
+                .predictMinRequests(orDefault(source.getPredictMinRequests(), defaults.getPredictMinRequests()))
+                .predictLeadMs(orDefault(source.getPredictLeadMs(), defaults.getPredictLeadMs()))
+                .build();
+    }
+    
+    private static <T> T orDefault(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+    
+    private static Map<String, String> resolveHeaders(String provider, String apiKey) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        
+        switch (provider) {
+            case "openai":
+            case "azure-openai":
+            case "ollama":
+                headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+                break;
+            case "anthropic":
+                headers.put("x-api-key", apiKey);
+                headers.put("anthropic-version", "2023-06-01");
+                break;
+            case "huggingface":
+                headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+                break;
+            default:
+                headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+        }
+        return Collections.unmodifiableMap(headers);
+    }
+    
+    /**
+     * Immutable copy of {@link LlmProperties.Warmup}, with unset values replaced by the defaults.
+     */
+    @Value
+    @Builder
+    public static class Warmup {
+        boolean enabled;
+        List<String> preloadModels;
+        long keepAliveIntervalMs;
+        long unloadAfterMs;
+        long idleAfterMs;
+        int maxWarmModels;
+        double predictMinRequests;
+        long predictLeadMs;
+    }
+}
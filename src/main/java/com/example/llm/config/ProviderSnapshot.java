@@ -0,0 +1,134 @@
+package com.example.llm.config;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable provider configuration published by {@link ProviderRegistry}. A request reads the
+ * current snapshot once and uses it for its whole lifetime, so a reload never exposes a
+ * half-updated configuration. Derived data such as the enabled-provider list is computed once here.
+ */
+@Getter
+public final class ProviderSnapshot {
+    
+    /** Metric tag for model names that appear nowhere in the configuration. */
+    public static final String OTHER_MODEL = "other";
+    
+    private final long version;
+    private final long loadedAt;
+    private final String source;
+    private final Map<String, ProviderSettings> providers;
+    private final String[] enabledProviders;
+    private final String defaultProvider;
+    private final Integer maxTokens;
+    private final Double temperature;
+    private final Boolean stream;
+    // Models named by the configuration, per provider
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Set<String>> configuredModels;
+    
+    // Requests currently running against this snapshot, used to drain it after a reload
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    ProviderSnapshot(long version, String source, LlmProperties properties) {
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+        this.source = source;
+        
+        Map<String, ProviderSettings> settings = new LinkedHashMap<>();
+        List<String> enabled = new ArrayList<>();
+        if (properties.getProviders() != null) {
+            properties.getProviders().forEach((name, config) -> {
+                ProviderSettings provider = ProviderSettings.from(name, config);
+                settings.put(name, provider);
+                if (provider.isEnabled()) {
+                    enabled.add(name);
+                }
+            });
+        }
+        this.providers = Collections.unmodifiableMap(settings);
+        this.enabledProviders = enabled.toArray(new String[0]);
+        this.defaultProvider = properties.getDefaultProvider();
+        this.maxTokens = properties.getMaxTokens();
+        this.temperature = properties.getTemperature();
+        this.stream = properties.getStream();
+        this.configuredModels = configuredModels(properties, settings);
+    }
+    
+    public ProviderSettings getProvider(String name) {
+        return name != null ? providers.get(name) : null;
+    }
+    
+    /**
+     * A provider can take traffic when it is enabled and has both a base URL and an API key.
+     */
+    public boolean isAvailable(String name) {
+        ProviderSettings provider = getProvider(name);
+        return provider != null && provider.isEnabled() && provider.isConfigured();
+    }
+    
+    /**
+     * The model name to use as a metric tag. Models named in the configuration are kept as they are;
+     * any other name a client sends is reported as {@value #OTHER_MODEL}, so callers cannot create
+     * an unbounded number of series.
+     */
+    public String modelTag(String provider, String model) {
+        Set<String> models = provider != null ? configuredModels.get(provider) : null;
+        return models != null && model != null && models.contains(model) ? model : OTHER_MODEL;
+    }
+    
+    public String[] getEnabledProviders() {
+        return enabledProviders.clone();
+    }
+    
+    public void acquire() {
+        inFlight.incrementAndGet();
+    }
+    
+    int release() {
+        return inFlight.decrementAndGet();
+    }
+    
+    private static Map<String, Set<String>> configuredModels(LlmProperties properties, Map<String, ProviderSettings> providers) {
+        Map<String, Set<String>> models = new HashMap<>();
+        providers.values().forEach(provider -> {
+            addModel(models, provider.getName(), provider.getDefaultModel());
+            addModel(models, provider.getName(), provider.getEmbeddingModel());
+            provider.getWarmup().getPreloadModels().forEach(model -> addModel(models, provider.getName(), model));
+        });
+        LlmProperties.Routing routing = properties.getRouting();
+        if (routing != null && routing.getRules() != null) {
+            for (LlmProperties.RoutingRule rule : routing.getRules()) {
+                if (rule.getTargets() != null) {
+                    rule.getTargets().forEach(target -> addModel(models, target.getProvider(), target.getModel()));
+                }
+                if (rule.getEscalateTo() != null) {
+                    addModel(models, rule.getEscalateTo().getProvider(), rule.getEscalateTo().getModel());
+                }
+            }
+        }
+        LlmProperties.Compaction compaction = properties.getCompaction();
+        if (compaction != null && compaction.getSummaryModel() != null) {
+            String provider = compaction.getSummaryProvider() != null 
+                    ? compaction.getSummaryProvider() : properties.getDefaultProvider();
+            addModel(models, provider, compaction.getSummaryModel());
+        }
+        return Collections.unmodifiableMap(models);
+    }
+    
+    private static void addModel(Map<String, Set<String>> models, String provider, String model) {
+        if (provider != null && model != null) {
+            models.computeIfAbsent(provider, name -> new HashSet<>()).add(model);
+        }
+    }
+}
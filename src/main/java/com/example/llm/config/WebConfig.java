@@ -1,12 +1,36 @@
 package com.example.llm.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
     
+    // Time for the final error event to reach the client after a document's deadline passes
+    private static final long ASYNC_TIMEOUT_MARGIN_MS = 30000L;
+    
+    private final LlmProperties llmProperties;
+    private final WebMvcProperties webMvcProperties;
+    
+    /**
+     * Streamed responses (map-reduce, fan-out) are async requests, which the servlet container
+     * would otherwise cut off after its default of 30 seconds. The limit follows
+     * {@code llm.documents.timeout-ms}, the longest a map-reduce may run, unless
+     * {@code spring.mvc.async.request-timeout} is set explicitly.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (webMvcProperties.getAsync().getRequestTimeout() != null) {
+            return;
+        }
+        configurer.setDefaultTimeout(llmProperties.getDocuments().getTimeoutMs() + ASYNC_TIMEOUT_MARGIN_MS);
+    }
+    
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
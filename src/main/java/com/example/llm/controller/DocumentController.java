@@ -0,0 +1,79 @@
+package com.example.llm.controller;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.document.DocumentProcessor;
+import com.example.llm.dto.DocumentProgress;
+import com.example.llm.service.Deadline;
+import com.example.llm.usage.UsageLedger;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/llm/documents")
+@RequiredArgsConstructor
+@Tag(name = "LLM Documents", description = "Processing of documents larger than a model's context window")
+public class DocumentController {
+    
+    private final DocumentProcessor documentProcessor;
+    private final LlmProperties llmProperties;
+    private final UsageLedger usageLedger;
+    
+    /**
+     * The body is read as a stream while chunks are being mapped, so it is never held in memory as a whole.
+     * Processing always has a deadline, at most {@code llm.documents.timeout-ms}, so the stream ends with
+     * an error event rather than being cut off by the async request timeout. Every step is accounted to
+     * {@code user}, whose quota is checked before the body is read.
+     */
+    @PostMapping(value = "/map-reduce", 
+                 consumes = MediaType.TEXT_PLAIN_VALUE,
+                 produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Map-reduce a long document", 
+               description = "Chunk a UTF-8 text body, run the instruction over every chunk in parallel and "
+                       + "combine the partial results; progress is streamed as each step finishes")
+    public ResponseEntity<Flux<DocumentProgress>> mapReduce(
+            InputStream body,
+            @Parameter(description = "Task to perform over the document (optional, defaults to a summary)")
+            @RequestParam(required = false) String instruction,
+            @Parameter(description = "LLM provider to use (optional, uses default if not specified)")
+            @RequestParam(required = false) String provider,
+            @Parameter(description = "Model to use for every step (optional)")
+            @RequestParam(required = false) String model,
+            @Parameter(description = "End user every step is accounted to for usage and quotas (optional)")
+            @RequestParam(required = false) String user,
+            @Parameter(description = "Time in milliseconds the caller is willing to wait for the whole document")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
+        
+        log.debug("Received map-reduce request for provider: {}", provider != null ? provider : "default");
+        
+        if (usageLedger.isOverQuota(user)) {
+            usageLedger.rejected(user);
+            // An error event rather than an exception: the error body must be written in the streamed format
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Flux.just(DocumentProgress.builder()
+                    .type(DocumentProgress.ERROR)
+                    .error("Token quota exceeded for user '" + usageLedger.getQuota(user).getUser() + "'")
+                    .build()));
+        }
+        
+        Duration limit = Duration.ofMillis(llmProperties.getDocuments().getTimeoutMs());
+        Deadline deadline = Deadline.after(Deadline.cap(Deadline.fromMillis(timeoutMs, null), limit));
+        return ResponseEntity.ok(documentProcessor.process(
+                        () -> new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)), 
+                        instruction, provider, model, user)
+                .contextWrite(context -> Deadline.put(context, deadline)));
+    }
+}
@@ -2,6 +2,12 @@ package com.example.llm.controller;
 
 import com.example.llm.dto.ChatRequest;
 import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.EmbeddingRequest;
+import com.example.llm.dto.EmbeddingResponse;
+import com.example.llm.dto.FanoutResult;
+import com.example.llm.health.ProviderHealth;
+import com.example.llm.health.ProviderHealthMonitor;
+import com.example.llm.service.Deadline;
 import com.example.llm.service.LlmService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,8 +16,10 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
@@ -27,6 +35,7 @@ import java.util.List;
 public class LlmController {
     
     private final LlmService llmService;
+    private final ProviderHealthMonitor healthMonitor;
     
     @PostMapping("/chat/completions")
     @Operation(summary = "Create chat completion", 
@@ -34,15 +43,58 @@ public class LlmController {
     public Mono<ResponseEntity<ChatResponse>> chatCompletion(
             @Valid @RequestBody ChatRequest request,
             @Parameter(description = "LLM provider to use (optional, uses default if not specified)")
-            @RequestParam(required = false) String provider) {
+            @RequestParam(required = false) String provider,
+            @Parameter(description = "Task hint used by model routing rules, e.g. 'classify' or 'summarize'")
+            @RequestHeader(value = "X-Task-Hint", required = false) String taskHint,
+            @Parameter(description = "Time in milliseconds the caller is willing to wait; the upstream call is cancelled after it")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
         
-        log.info("Received chat completion request for provider: {}", 
+        log.debug("Received chat completion request for provider: {}", 
                 provider != null ? provider : "default");
         
-        return llmService.chatCompletion(request, provider)
+        Deadline deadline = Deadline.fromMillis(timeoutMs, request.getRequestTimeoutMs());
+        return llmService.chatCompletion(request, provider, taskHint)
                 .map(ResponseEntity::ok)
                 .doOnSuccess(response -> log.debug("Successfully processed chat completion"))
-                .doOnError(error -> log.error("Error processing chat completion: {}", error.getMessage()));
+                .doOnError(error -> log.error("Error processing chat completion: {}", error.getMessage()))
+                .contextWrite(context -> Deadline.put(context, deadline));
+    }
+    
+    @PostMapping(value = "/chat/completions/fanout", 
+                 produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Fan out chat completion", 
+               description = "Send one chat request to several providers concurrently and stream each result as it arrives")
+    public Flux<FanoutResult> fanOut(
+            @Valid @RequestBody ChatRequest request,
+            @Parameter(description = "Providers to query (optional, uses all available providers if not specified)")
+            @RequestParam(required = false) List<String> providers,
+            @Parameter(description = "Stop after this many successful answers and cancel the remaining providers")
+            @RequestParam(required = false) Integer firstN,
+            @Parameter(description = "Time in milliseconds the caller is willing to wait for each provider")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
+        
+        log.debug("Received fan-out request for providers: {}", providers != null ? providers : "all");
+        
+        Deadline deadline = Deadline.fromMillis(timeoutMs, request.getRequestTimeoutMs());
+        return llmService.fanOut(request, providers, firstN)
+                .contextWrite(context -> Deadline.put(context, deadline));
+    }
+    
+    @PostMapping("/embeddings")
+    @Operation(summary = "Create embeddings", 
+               description = "Create embeddings for one or more inputs; concurrent requests are micro-batched upstream")
+    public Mono<ResponseEntity<EmbeddingResponse>> embeddings(
+            @Valid @RequestBody EmbeddingRequest request,
+            @Parameter(description = "LLM provider to use (optional, uses default if not specified)")
+            @RequestParam(required = false) String provider,
+            @Parameter(description = "Time in milliseconds the caller is willing to wait, including batching")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
+        
+        Deadline deadline = Deadline.fromMillis(timeoutMs, null);
+        return llmService.embeddings(request, provider)
+                .map(ResponseEntity::ok)
+                .doOnError(error -> log.error("Error processing embeddings: {}", error.getMessage()))
+                .contextWrite(context -> Deadline.put(context, deadline));
     }
     
     @GetMapping("/providers")
@@ -61,7 +113,14 @@ public class LlmController {
             @PathVariable String provider) {
         
         boolean available = llmService.isProviderAvailable(provider);
-        ProviderStatus status = new ProviderStatus(provider, available);
+        ProviderHealth health = healthMonitor.getHealth(provider);
+        ProviderStatus status = new ProviderStatus(
+                provider, 
+                available, 
+                health.getStatus().name(), 
+                health.getLatencyMs(), 
+                health.getCheckedAt()
+        );
         
         return ResponseEntity.ok(status);
     }
@@ -88,6 +147,9 @@ public class LlmController {
     public static class ProviderStatus {
         private String provider;
         private boolean available;
+        private String health;
+        private long probeLatencyMs;
+        private long checkedAt;
     }
     
     @Data
@@ -0,0 +1,44 @@
+package com.example.llm.controller;
+
+import com.example.llm.usage.QuotaStatus;
+import com.example.llm.usage.UsageLedger;
+import com.example.llm.usage.UsageRecord;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/llm/usage")
+@RequiredArgsConstructor
+@Tag(name = "LLM Usage", description = "Token usage per user, provider and model, and per-user token quotas (read-only)")
+public class UsageController {
+    
+    private final UsageLedger usageLedger;
+    
+    @GetMapping
+    @Operation(summary = "Query usage", 
+               description = "Token usage per (user, provider, model, time bucket) for the retained buckets")
+    public ResponseEntity<List<UsageRecord>> query(
+            @RequestParam(required = false) String user,
+            @RequestParam(required = false) String provider,
+            @RequestParam(required = false) String model,
+            @Parameter(description = "Earliest bucket start, epoch milliseconds (inclusive)")
+            @RequestParam(required = false) Long from,
+            @Parameter(description = "Latest bucket start, epoch milliseconds (exclusive)")
+            @RequestParam(required = false) Long to) {
+        
+        return ResponseEntity.ok(usageLedger.query(user, provider, model, from, to));
+    }
+    
+    @GetMapping("/quotas/{user}")
+    @Operation(summary = "Get quota", 
+               description = "Token quota and consumption of a user in the current quota window")
+    public ResponseEntity<QuotaStatus> getQuota(@PathVariable String user) {
+        return ResponseEntity.ok(usageLedger.getQuota(user));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.llm.document;
+
+import com.example.llm.service.TokenEstimator;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Splits a text stream into token-bounded chunks that overlap by a few sentences, reading only as
+ * far ahead as the next chunk needs. Chunks are cut at the last paragraph, line or sentence break
+ * in the second half of the window when there is one, so that ideas are not split mid-sentence.
+ */
+public final class DocumentChunker {
+    
+    private static final int READ_BLOCK = 8192;
+    
+    private DocumentChunker() {
+    }
+    
+    /**
+     * Lazily chunk the text produced by {@code source}. Reading is blocking and runs on the
+     * bounded-elastic scheduler, one chunk per downstream request, and the reader is closed when
+     * the flux terminates or is cancelled.
+     */
+    public static Flux<String> chunks(Callable<Reader> source, int chunkTokens, int overlapTokens) {
+        int chunkChars = Math.max(1, TokenEstimator.charsFor(chunkTokens));
+        // Cuts land in the second half of the window, so this cap keeps every chunk advancing
+        int overlapChars = Math.max(0, Math.min(TokenEstimator.charsFor(overlapTokens), chunkChars / 4));
+        return Flux.<String, State>generate(
+                        () -> new State(source.call()),
+                        (state, sink) -> {
+                            String chunk = next(state, chunkChars, overlapChars);
+                            if (chunk == null) {
+                                sink.complete();
+                            } else {
+                                sink.next(chunk);
+                            }
+                            return state;
+                        },
+                        State::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private static String next(State state, int chunkChars, int overlapChars) {
+        StringBuilder buffer = state.buffer;
+        char[] block = new char[READ_BLOCK];
+        while (buffer.length() < chunkChars && !state.eof) {
+            int read;
+            try {
+                read = state.reader.read(block, 0, Math.min(block.length, chunkChars - buffer.length()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (read < 0) {
+                state.eof = true;
+            } else {
+                buffer.append(block, 0, read);
+            }
+        }
+        
+        // Nothing new beyond the overlap carried over from the previous chunk
+        if (buffer.length() <= state.carried || buffer.toString().trim().isEmpty()) {
+            return null;
+        }
+        
+        if (state.eof && buffer.length() <= chunkChars) {
+            String last = buffer.toString();
+            buffer.setLength(0);
+            state.carried = 0;
+            return last;
+        }
+        
+        int cut = boundary(buffer, chunkChars);
+        String chunk = buffer.substring(0, cut);
+        int keepFrom = overlapStart(buffer, cut, overlapChars);
+        buffer.delete(0, keepFrom);
+        state.carried = cut - keepFrom;
+        return chunk;
+    }
+    
+    /**
+     * The end of the chunk: the last paragraph, line, sentence or word break in the second half of the window.
+     */
+    static int boundary(CharSequence text, int chunkChars) {
+        int end = Math.min(chunkChars, text.length());
+        int min = end / 2;
+        String window = text.subSequence(0, end).toString();
+        
+        int paragraph = window.lastIndexOf("\n\n");
+        if (paragraph >= min) {
+            return paragraph + 2;
+        }
+        int line = window.lastIndexOf('\n');
+        if (line >= min) {
+            return line + 1;
+        }
+        int sentence = Math.max(window.lastIndexOf(". "), Math.max(window.lastIndexOf("? "), window.lastIndexOf("! ")));
+        if (sentence >= min) {
+            return sentence + 2;
+        }
+        int word = window.lastIndexOf(' ');
+        if (word >= min) {
+            return word + 1;
+        }
+        return end;
+    }
+    
+    /**
+     * Where the next chunk starts: {@code overlapChars} before the cut, moved forward to a word start.
+     */
+    private static int overlapStart(CharSequence text, int cut, int overlapChars) {
+        int start = cut - overlapChars;
+        if (overlapChars == 0) {
+            return cut;
+        }
+        for (int i = start; i < cut; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+    
+    private static final class State {
+        private final Reader reader;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean eof;
+        // Length of the overlap at the start of the buffer, already sent with the previous chunk
+        private int carried;
+        
+        State(Reader reader) {
+            this.reader = reader;
+        }
+        
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Nothing useful to do; the request body is discarded either way
+            }
+        }
+    }
+}
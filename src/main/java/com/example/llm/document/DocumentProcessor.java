@@ -0,0 +1,257 @@
+package com.example.llm.document;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.DocumentProgress;
+import com.example.llm.exception.LlmException;
+import com.example.llm.service.Deadline;
+import com.example.llm.service.LlmService;
+import com.example.llm.service.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers a task over a document larger than a model's context window. The document is chunked
+ * while it is being read, every chunk is mapped through {@link LlmService} with bounded concurrency,
+ * and the partial results are reduced in groups, level by level, until one answer remains. With
+ * enough concurrency the latency grows with the depth of the reduce tree rather than the document length.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentProcessor {
+    
+    private static final String MAP_PROMPT = "You are given one part of a longer document, which is processed in parts. "
+            + "Extract everything in this part that is relevant to the task, concisely. "
+            + "If nothing is relevant, answer with 'Nothing relevant.'";
+    private static final String REDUCE_PROMPT = "You are given partial results produced from consecutive parts of one "
+            + "document. Combine them into a single answer to the task. Parts overlap slightly, so remove duplicates.";
+    
+    private final LlmService llmService;
+    private final LlmProperties llmProperties;
+    
+    /**
+     * Run the map-reduce and stream its progress. The last event is either a result or an error;
+     * when the request's {@link Deadline} passes first, the error is emitted at the deadline.
+     *
+     * @param source opens the document text; it is read lazily and closed when processing ends
+     * @param instruction the task to perform over the document, or null for the configured default
+     * @param provider the provider for every step, or null for the default
+     * @param model the model for every step, or null for the provider default
+     * @param user the caller every step is accounted to, or null for anonymous
+     */
+    public Flux<DocumentProgress> process(Callable<Reader> source, String instruction, String provider, String model,
+                                          String user) {
+        LlmProperties.Documents settings = llmProperties.getDocuments();
+        String task = StringUtils.hasText(instruction) ? instruction : settings.getDefaultInstruction();
+        
+        return Flux.deferContextual(context -> {
+            Deadline deadline = Deadline.from(context);
+            Run run = new Run(task, provider, model, user, settings);
+            List<String> partials = new ArrayList<>();
+            AtomicInteger mapped = new AtomicInteger();
+            
+            Flux<DocumentProgress> map = DocumentChunker.chunks(source, settings.getChunkTokens(), settings.getOverlapTokens())
+                    .index()
+                    .flatMap(chunk -> {
+                        int index = chunk.getT1().intValue();
+                        if (index >= settings.getMaxChunks()) {
+                            return Mono.error(new LlmException(
+                                    "Document is longer than " + settings.getMaxChunks() + " chunks", provider, 413));
+                        }
+                        return run.complete(mapRequest(run, chunk.getT2()))
+                                .map(content -> {
+                                    synchronized (partials) {
+                                        while (partials.size() <= index) {
+                                            partials.add(null);
+                                        }
+                                        partials.set(index, content);
+                                    }
+                                    return run.progress(DocumentProgress.MAP, 0, index, mapped.incrementAndGet(), null);
+                                });
+                    }, settings.getMapConcurrency());
+            
+            return map.concatWith(Flux.defer(() -> {
+                        if (partials.isEmpty()) {
+                            return Flux.error(new LlmException("Document is empty", provider, 400));
+                        }
+                        return reduce(run, partials, 1);
+                    }))
+                    .transform(steps -> deadline != null ? steps.takeUntilOther(expiry(deadline, provider)) : steps)
+                    .onErrorResume(ex -> {
+                        log.debug("Map-reduce failed: {}", ex.getMessage());
+                        return Mono.just(DocumentProgress.builder()
+                                .type(DocumentProgress.ERROR)
+                                .error(ex.getMessage())
+                                .usage(run.usage())
+                                .elapsedMs(run.elapsedMs())
+                                .build());
+                    });
+        });
+    }
+    
+    /**
+     * Fails once the deadline passes, so that a stalled document ends with an error event.
+     */
+    private static Mono<Void> expiry(Deadline deadline, String provider) {
+        return Mono.delay(deadline.remaining())
+                .then(Mono.error(new LlmException("Document was not processed within the deadline", provider, 504)));
+    }
+    
+    private Flux<DocumentProgress> reduce(Run run, List<String> inputs, int level) {
+        if (inputs.size() == 1) {
+            return Flux.just(DocumentProgress.builder()
+                    .type(DocumentProgress.RESULT)
+                    .level(level - 1)
+                    .content(inputs.get(0))
+                    .usage(run.usage())
+                    .elapsedMs(run.elapsedMs())
+                    .build());
+        }
+        
+        List<List<String>> groups = group(inputs, run.settings);
+        String[] outputs = new String[groups.size()];
+        AtomicInteger reduced = new AtomicInteger();
+        Flux<DocumentProgress> steps = Flux.range(0, groups.size())
+                .flatMap(index -> run.complete(reduceRequest(run, groups.get(index)))
+                        .map(content -> {
+                            outputs[index] = content;
+                            return run.progress(DocumentProgress.REDUCE, level, index, reduced.incrementAndGet(), groups.size());
+                        }), run.settings.getMapConcurrency());
+        return steps.concatWith(Flux.defer(() -> reduce(run, Arrays.asList(outputs), level + 1)));
+    }
+    
+    /**
+     * Split consecutive results into groups of at most {@code reduce-fan-in} that fit in one chunk's
+     * token budget. Every group has at least two members, so each level shrinks.
+     */
+    static List<List<String>> group(List<String> inputs, LlmProperties.Documents settings) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int tokens = 0;
+        for (String input : inputs) {
+            int size = TokenEstimator.estimate(input);
+            boolean full = current.size() >= settings.getReduceFanIn()
+                    || (current.size() >= 2 && tokens + size > settings.getChunkTokens());
+            if (full) {
+                groups.add(current);
+                current = new ArrayList<>();
+                tokens = 0;
+            }
+            current.add(input);
+            tokens += size;
+        }
+        if (current.size() == 1 && !groups.isEmpty()) {
+            groups.get(groups.size() - 1).add(current.get(0));
+        } else {
+            groups.add(current);
+        }
+        return groups;
+    }
+    
+    private static ChatRequest mapRequest(Run run, String chunk) {
+        return request(run, MAP_PROMPT, "Task: " + run.task + "\n\nDocument part:\n" + chunk, run.settings.getMapMaxTokens());
+    }
+    
+    private static ChatRequest reduceRequest(Run run, List<String> group) {
+        StringBuilder content = new StringBuilder("Task: ").append(run.task).append("\n\nPartial results:");
+        for (int i = 0; i < group.size(); i++) {
+            content.append("\n\n[").append(i + 1).append("]\n").append(group.get(i));
+        }
+        return request(run, REDUCE_PROMPT, content.toString(), run.settings.getReduceMaxTokens());
+    }
+    
+    private static ChatRequest request(Run run, String system, String user, Integer maxTokens) {
+        return ChatRequest.builder()
+                .model(run.model)
+                .user(run.user)
+                .maxTokens(maxTokens)
+                .messages(Arrays.asList(
+                        ChatRequest.Message.builder().role("system").content(system).build(),
+                        ChatRequest.Message.builder().role("user").content(user).build()))
+                .build();
+    }
+    
+    /**
+     * State of one map-reduce run.
+     */
+    private final class Run {
+        private final String task;
+        private final String provider;
+        private final String model;
+        private final String user;
+        private final LlmProperties.Documents settings;
+        private final long start = System.nanoTime();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+        
+        Run(String task, String provider, String model, String user, LlmProperties.Documents settings) {
+            this.task = task;
+            this.provider = provider;
+            this.model = model;
+            this.user = user;
+            this.settings = settings;
+        }
+        
+        Mono<String> complete(ChatRequest request) {
+            return llmService.chatCompletion(request, provider)
+                    .map(response -> {
+                        if (response.getUsage() != null) {
+                            addTokens(promptTokens, response.getUsage().getPromptTokens());
+                            addTokens(completionTokens, response.getUsage().getCompletionTokens());
+                        }
+                        if (response.getChoices() == null || response.getChoices().isEmpty()
+                                || response.getChoices().get(0).getMessage() == null) {
+                            return "";
+                        }
+                        String content = response.getChoices().get(0).getMessage().getContent();
+                        return content != null ? content : "";
+                    });
+        }
+        
+        DocumentProgress progress(String type, int level, int index, int completed, Integer total) {
+            return DocumentProgress.builder()
+                    .type(type)
+                    .level(level)
+                    .index(index)
+                    .completed(completed)
+                    .total(total)
+                    .elapsedMs(elapsedMs())
+                    .build();
+        }
+        
+        ChatResponse.Usage usage() {
+            int prompt = (int) promptTokens.get();
+            int completion = (int) completionTokens.get();
+            return ChatResponse.Usage.builder()
+                    .promptTokens(prompt)
+                    .completionTokens(completion)
+                    .totalTokens(prompt + completion)
+                    .build();
+        }
+        
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        
+        private void addTokens(AtomicLong total, Integer tokens) {
+            if (tokens != null) {
+                total.addAndGet(tokens);
+            }
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ChatRequest {
@@ -47,6 +47,10 @@ public class ChatRequest {
     // Additional provider-specific parameters
     private Map<String, Object> additionalProperties;
     
+    // Client deadline in milliseconds; read by the service, never forwarded upstream
+    @JsonProperty(value = "request_timeout_ms", access = JsonProperty.Access.WRITE_ONLY)
+    private Integer requestTimeoutMs;
+    
     @Data
     @Builder
     @NoArgsConstructor
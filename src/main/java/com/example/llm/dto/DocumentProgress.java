@@ -0,0 +1,42 @@
+package com.example.llm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One event of a streamed map-reduce run: a finished map or reduce step, the final answer, or an error.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DocumentProgress {
+    
+    public static final String MAP = "map";
+    public static final String REDUCE = "reduce";
+    public static final String RESULT = "result";
+    public static final String ERROR = "error";
+    
+    private String type;
+    
+    // 0 for the map stage, then 1, 2, ... for each reduce level
+    private Integer level;
+    
+    private Integer index;
+    
+    private Integer completed;
+    
+    private Integer total;
+    
+    private String content;
+    
+    private ChatResponse.Usage usage;
+    
+    private long elapsedMs;
+    
+    private String error;
+}
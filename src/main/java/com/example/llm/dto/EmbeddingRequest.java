@@ -0,0 +1,31 @@
+package com.example.llm.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmbeddingRequest {
+    
+    // Accepts either a single string or an array of strings, as in the OpenAI API
+    @NotEmpty
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<@NotBlank String> input;
+    
+    private String model;
+    
+    @JsonProperty("encoding_format")
+    private String encodingFormat; // "float" (default) or "base64"
+    
+    private String user;
+}
@@ -0,0 +1,40 @@
+package com.example.llm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EmbeddingResponse {
+    
+    private String object;
+    
+    private String model;
+    
+    private String provider;
+    
+    private List<Embedding> data;
+    
+    private ChatResponse.Usage usage;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Embedding {
+        private String object;
+        
+        private Integer index;
+        
+        // float[] for the "float" encoding, little-endian float32 packed as a base64 string for "base64"
+        private Object embedding;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.llm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One provider's answer in a fan-out request, emitted as soon as that provider finishes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FanoutResult {
+    
+    private String provider;
+    
+    private boolean success;
+    
+    private long latencyMs;
+    
+    private ChatResponse response;
+    
+    private ChatResponse.Usage usage;
+    
+    private String error;
+    
+    private Integer statusCode;
+}
@@ -20,7 +20,9 @@ public class GlobalExceptionHandler {
     
     @ExceptionHandler(LlmException.class)
     public ResponseEntity<ErrorResponse> handleLlmException(LlmException ex) {
-        log.error("LLM exception occurred for provider {}: {}", ex.getProvider(), ex.getMessage(), ex);
+        // Upstream failures are expected and already recorded by the request journal; keep stack traces at DEBUG
+        log.warn("LLM exception occurred for provider {}: {}", ex.getProvider(), ex.getMessage());
+        log.debug("LLM exception details", ex);
         
         ErrorResponse error = new ErrorResponse(
                 ex.getMessage(),
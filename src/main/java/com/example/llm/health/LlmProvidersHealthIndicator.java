@@ -0,0 +1,54 @@
+package com.example.llm.health;
+
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the cached probe results as the {@code llmProviders} health component. The component is
+ * UP while at least one configured provider is healthy and UNKNOWN otherwise: upstream providers are
+ * outside this service, so losing them must not turn the aggregate health DOWN (503) and get the
+ * instance restarted. Reading it never touches the network.
+ */
+@Component
+@RequiredArgsConstructor
+public class LlmProvidersHealthIndicator implements HealthIndicator {
+    
+    private final ProviderRegistry providerRegistry;
+    private final ProviderHealthMonitor healthMonitor;
+    
+    @Override
+    public Health health() {
+        ProviderSnapshot snapshot = providerRegistry.current();
+        Map<String, Object> details = new LinkedHashMap<>();
+        int healthy = 0;
+        for (String provider : snapshot.getProviders().keySet()) {
+            if (!snapshot.isAvailable(provider)) {
+                continue;
+            }
+            ProviderHealth health = healthMonitor.getHealth(provider);
+            if (health.isHealthy()) {
+                healthy++;
+            }
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("status", health.getStatus());
+            detail.put("latencyMs", health.getLatencyMs());
+            detail.put("checkedAt", health.getCheckedAt());
+            if (health.getError() != null) {
+                detail.put("error", health.getError());
+            }
+            details.put(provider, detail);
+        }
+        
+        return (healthy > 0 ? Health.up() : Health.unknown())
+                .withDetail("healthyProviders", healthy)
+                .withDetails(details)
+                .build();
+    }
+}
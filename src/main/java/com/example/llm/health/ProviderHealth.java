@@ -0,0 +1,38 @@
+package com.example.llm.health;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Result of the most recent probe of one provider. Instances are immutable and replaced
+ * wholesale after each probe, so readers never see a half-updated status.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ProviderHealth {
+    
+    public enum Status {
+        UNKNOWN, UP, DOWN
+    }
+    
+    String provider;
+    Status status;
+    long latencyMs;
+    long checkedAt;
+    int consecutiveFailures;
+    String error;
+    
+    public static ProviderHealth unknown(String provider) {
+        return ProviderHealth.builder()
+                .provider(provider)
+                .status(Status.UNKNOWN)
+                .build();
+    }
+    
+    /**
+     * Providers that have not been probed yet are given the benefit of the doubt.
+     */
+    public boolean isHealthy() {
+        return status != Status.DOWN;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.llm.health;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSettings;
+import com.example.llm.config.ProviderSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes every enabled, configured provider in the background and caches the result, so that
+ * availability checks and health endpoints are a map lookup rather than a network call.
+ * Each round is spread out by a random jitter to avoid probing all providers at the same instant.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderHealthMonitor {
+    
+    private static final String MODE_COMPLETION = "completion";
+    
+    private final LlmProperties llmProperties;
+    private final ProviderRegistry providerRegistry;
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<String, ProviderHealth> health = new ConcurrentHashMap<>();
+    private final Set<String> probing = ConcurrentHashMap.newKeySet();
+    private final Set<String> gauges = ConcurrentHashMap.newKeySet();
+    private Scheduler scheduler;
+    private Disposable schedule;
+    
+    @PostConstruct
+    public void start() {
+        LlmProperties.Health settings = llmProperties.getHealth();
+        if (settings == null || !Boolean.TRUE.equals(settings.getEnabled())) {
+            return;
+        }
+        
+        scheduler = Schedulers.newSingle("llm-health-probe", true);
+        schedule = scheduler.schedulePeriodically(this::probeAll, 0, settings.getIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Provider health probes every {} ms (mode '{}')", settings.getIntervalMs(), settings.getMode());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+    
+    /**
+     * Whether the provider may receive traffic. Providers that were never probed count as healthy.
+     */
+    public boolean isHealthy(String provider) {
+        ProviderHealth current = health.get(provider);
+        return current == null || current.isHealthy();
+    }
+    
+    public ProviderHealth getHealth(String provider) {
+        ProviderHealth current = health.get(provider);
+        return current != null ? current : ProviderHealth.unknown(provider);
+    }
+    
+    public Collection<ProviderHealth> getAll() {
+        return Collections.unmodifiableCollection(health.values());
+    }
+    
+    /**
+     * Start one probe per provider of the current configuration, each after a random jitter.
+     */
+    void probeAll() {
+        LlmProperties.Health settings = llmProperties.getHealth();
+        ProviderSnapshot snapshot = providerRegistry.current();
+        
+        // Forget providers that were removed or disabled by a reload
+        health.keySet().removeIf(name -> !snapshot.isAvailable(name));
+        
+        for (ProviderSettings provider : snapshot.getProviders().values()) {
+            if (!snapshot.isAvailable(provider.getName()) || !probing.add(provider.getName())) {
+                continue;
+            }
+            long jitter = settings.getJitterMs() > 0 ? ThreadLocalRandom.current().nextLong(settings.getJitterMs()) : 0;
+            Mono.delay(Duration.ofMillis(jitter))
+                    .then(probe(provider, settings))
+                    .doFinally(signal -> probing.remove(provider.getName()))
+                    .subscribe();
+        }
+    }
+    
+    /**
+     * Probe one provider and record the outcome. Connection errors, timeouts, 5xx and rejected
+     * credentials (401, 403) count as failures; any other answer, such as a 404 from a provider
+     * without {@code GET /models} or a 429, shows the provider is reachable and counts as a success.
+     */
+    Mono<ProviderHealth> probe(ProviderSettings provider, LlmProperties.Health settings) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request(provider, settings)
+                    .timeout(Duration.ofMillis(settings.getTimeoutMs()))
+                    .onErrorResume(ProviderHealthMonitor::isReachable, ex -> Mono.empty())
+                    .then(Mono.fromCallable(() -> record(provider.getName(), settings, System.nanoTime() - start, null)))
+                    .onErrorResume(ex -> Mono.fromCallable(() -> 
+                            record(provider.getName(), settings, System.nanoTime() - start, ex)));
+        });
+    }
+    
+    private Mono<Void> request(ProviderSettings provider, LlmProperties.Health settings) {
+        WebClient.RequestHeadersSpec<?> request;
+        if (MODE_COMPLETION.equals(settings.getMode())) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("role", "user");
+            message.put("content", "ping");
+            Map<String, Object> body = new HashMap<>();
+            body.put("model", provider.getDefaultModel());
+            body.put("max_tokens", 1);
+            body.put("messages", Collections.singletonList(message));
+            request = webClient.post()
+                    .uri(provider.getChatCompletionsUrl())
+                    .headers(provider::applyHeaders)
+                    .bodyValue(body);
+        } else {
+            request = webClient.get()
+                    .uri(provider.getModelsUrl())
+                    .headers(provider::applyHeaders);
+        }
+        return request.retrieve().toBodilessEntity().then();
+    }
+    
+    /**
+     * Rejected credentials count against a provider on purpose: every real request would be rejected too.
+     */
+    static boolean isReachable(Throwable error) {
+        if (!(error instanceof WebClientResponseException)) {
+            return false;
+        }
+        int status = ((WebClientResponseException) error).getRawStatusCode();
+        return status < 500 && status != 401 && status != 403;
+    }
+    
+    private ProviderHealth record(String provider, LlmProperties.Health settings, long nanos, Throwable error) {
+        ProviderHealth previous = getHealth(provider);
+        int failures = error == null ? 0 : previous.getConsecutiveFailures() + 1;
+        ProviderHealth.Status status;
+        if (error == null) {
+            status = ProviderHealth.Status.UP;
+        } else if (failures >= settings.getFailureThreshold()) {
+            status = ProviderHealth.Status.DOWN;
+        } else {
+            status = previous.getStatus();
+        }
+        
+        ProviderHealth current = ProviderHealth.builder()
+                .provider(provider)
+                .status(status)
+                .latencyMs(TimeUnit.NANOSECONDS.toMillis(nanos))
+                .checkedAt(System.currentTimeMillis())
+                .consecutiveFailures(failures)
+                .error(error != null ? String.valueOf(error.getMessage()) : null)
+                .build();
+        // A reload may have removed the provider while the probe was running
+        if (providerRegistry.current().isAvailable(provider)) {
+            health.put(provider, current);
+        }
+        
+        meterRegistry.timer("llm.health.probe.latency",
+                "provider", provider,
+                "outcome", error == null ? "success" : "error")
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (gauges.add(provider)) {
+            Gauge.builder("llm.health.up", this, monitor -> monitor.isHealthy(provider) ? 1 : 0)
+                    .description("Whether the provider passed its recent health probes")
+                    .tag("provider", provider)
+                    .register(meterRegistry);
+        }
+        if (status != previous.getStatus()) {
+            if (status == ProviderHealth.Status.DOWN) {
+                log.warn("Provider '{}' is DOWN after {} failed probes: {}", provider, failures, current.getError());
+            } else {
+                log.info("Provider '{}' is {}", provider, status);
+            }
+        }
+        return current;
+    }
+}
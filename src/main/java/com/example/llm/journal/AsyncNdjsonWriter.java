@@ -0,0 +1,164 @@
+package com.example.llm.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes records as gzip-compressed NDJSON from a single background thread.
+ * Callers hand records over through a {@link RingBuffer}; when the buffer is full the record is
+ * dropped and counted rather than blocking the request thread. Files roll once they reach
+ * {@code maxFileBytes} of uncompressed output.
+ */
+@Slf4j
+public class AsyncNdjsonWriter implements Closeable {
+    
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final RingBuffer<Object> buffer;
+    private final ObjectWriter writer;
+    private final Path directory;
+    private final String filePrefix;
+    private final long maxFileBytes;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Thread thread;
+    
+    private volatile boolean running = true;
+    private volatile Path file;
+    private OutputStream out;
+    private long fileBytes;
+    private int fileSequence;
+    
+    public AsyncNdjsonWriter(Path directory, String filePrefix, int bufferSize, long maxFileBytes, ObjectMapper objectMapper) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.writer = objectMapper.writer();
+        this.directory = directory;
+        this.filePrefix = filePrefix;
+        this.maxFileBytes = maxFileBytes;
+        this.thread = new Thread(this::drainLoop, filePrefix + "-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * Hand a record to the writer thread without blocking.
+     *
+     * @return false if the record was dropped because the buffer is full or the writer is closed
+     */
+    public boolean offer(Object record) {
+        if (!running || !buffer.offer(record)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    public long getWritten() {
+        return written.get();
+    }
+    
+    public int getPending() {
+        return buffer.size();
+    }
+    
+    /**
+     * The file currently being appended to, or null before the first record and after closing.
+     */
+    public Path getCurrentFile() {
+        return file;
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void drainLoop() {
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        try {
+            while (true) {
+                Object record = buffer.poll();
+                if (record != null) {
+                    write(record);
+                    dirty = true;
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                if (dirty && System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+                    out.flush();
+                    lastFlush = System.nanoTime();
+                    dirty = false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            log.warn("Writer '{}' stopped after I/O failure: {}", filePrefix, e.getMessage());
+            running = false;
+        } finally {
+            closeFile();
+        }
+    }
+    
+    private void write(Object record) throws IOException {
+        byte[] line = writer.writeValueAsBytes(record);
+        if (out == null || fileBytes + line.length > maxFileBytes) {
+            roll();
+        }
+        out.write(line);
+        out.write('\n');
+        fileBytes += line.length + 1;
+        written.incrementAndGet();
+    }
+    
+    private void roll() throws IOException {
+        closeFile();
+        Files.createDirectories(directory);
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Path next = directory.resolve(filePrefix + "-" + timestamp + "-" + (fileSequence++) + ".ndjson.gz");
+        out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(next), 64 * 1024, true));
+        file = next;
+        fileBytes = 0;
+        log.debug("Writer '{}' rolled to {}", filePrefix, next);
+    }
+    
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Failed to close file for writer '{}': {}", filePrefix, e.getMessage());
+        }
+        out = null;
+        file = null;
+    }
+}
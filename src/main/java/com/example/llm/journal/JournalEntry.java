@@ -0,0 +1,40 @@
+package com.example.llm.journal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+    
+    private long timestamp;
+    
+    private String provider;
+    
+    private String model;
+    
+    private String outcome;
+    
+    private long latencyMicros;
+    
+    private int messages;
+    
+    private Integer promptTokens;
+    
+    private Integer completionTokens;
+    
+    private String finishReason;
+    
+    private String error;
+    
+    // Only present for sampled requests, after redaction
+    private String prompt;
+    
+    private String response;
+}
@@ -0,0 +1,164 @@
+package com.example.llm.journal;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Structured audit journal of upstream exchanges. Recording only builds a small entry and
+ * offers it to an {@link AsyncNdjsonWriter}, so the request path never waits on disk I/O.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestJournal {
+    
+    private static final String REDACTED = "[REDACTED]";
+    
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
+    private Pattern redactPattern;
+    private volatile AsyncNdjsonWriter writer;
+    private double sampleRate;
+    
+    @PostConstruct
+    public void start() {
+        LlmProperties.Journal settings = llmProperties.getJournal();
+        if (settings == null || !Boolean.TRUE.equals(settings.getEnabled())) {
+            return;
+        }
+        
+        // One alternation so each sampled body is scanned once, not once per pattern
+        List<String> alternatives = new ArrayList<>();
+        for (String pattern : settings.getRedactPatterns()) {
+            alternatives.add("(?:" + pattern + ")");
+        }
+        redactPattern = alternatives.isEmpty() ? null : Pattern.compile(String.join("|", alternatives));
+        sampleRate = settings.getSampleRate();
+        AsyncNdjsonWriter journalWriter = new AsyncNdjsonWriter(
+                Paths.get(settings.getDirectory()),
+                "journal",
+                settings.getBufferSize(),
+                settings.getMaxFileSizeMb() * 1024L * 1024L,
+                objectMapper
+        );
+        
+        FunctionCounter.builder("llm.journal.dropped", journalWriter, AsyncNdjsonWriter::getDropped)
+                .description("Journal entries dropped because the buffer was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("llm.journal.written", journalWriter, AsyncNdjsonWriter::getWritten)
+                .description("Journal entries written to disk")
+                .register(meterRegistry);
+        Gauge.builder("llm.journal.pending", journalWriter, AsyncNdjsonWriter::getPending)
+                .description("Journal entries waiting for the writer thread")
+                .register(meterRegistry);
+        
+        writer = journalWriter;
+        log.info("Request journal enabled in '{}' (body sample rate {})", settings.getDirectory(), sampleRate);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        AsyncNdjsonWriter journalWriter = writer;
+        writer = null;
+        if (journalWriter != null) {
+            journalWriter.close();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return writer != null;
+    }
+    
+    long getDropped() {
+        AsyncNdjsonWriter journalWriter = writer;
+        return journalWriter != null ? journalWriter.getDropped() : 0;
+    }
+    
+    long getWritten() {
+        AsyncNdjsonWriter journalWriter = writer;
+        return journalWriter != null ? journalWriter.getWritten() : 0;
+    }
+    
+    int getPending() {
+        AsyncNdjsonWriter journalWriter = writer;
+        return journalWriter != null ? journalWriter.getPending() : 0;
+    }
+    
+    /**
+     * Record one upstream exchange. Never blocks; the entry is dropped if the journal is backed up.
+     *
+     * @param provider the provider that served the request
+     * @param request the request as sent upstream
+     * @param response the response, or null on error
+     * @param error the failure, or null on success
+     * @param latencyNanos time spent waiting on the provider
+     */
+    public void record(String provider, ChatRequest request, ChatResponse response, Throwable error, long latencyNanos) {
+        AsyncNdjsonWriter journalWriter = writer;
+        if (journalWriter == null) {
+            return;
+        }
+        
+        JournalEntry.JournalEntryBuilder entry = JournalEntry.builder()
+                .timestamp(System.currentTimeMillis())
+                .provider(provider)
+                .model(request.getModel())
+                .outcome(error == null ? "success" : "error")
+                .latencyMicros(TimeUnit.NANOSECONDS.toMicros(latencyNanos))
+                .messages(request.getMessages() != null ? request.getMessages().size() : 0);
+        
+        if (response != null && response.getUsage() != null) {
+            entry.promptTokens(response.getUsage().getPromptTokens())
+                    .completionTokens(response.getUsage().getCompletionTokens());
+        }
+        String answer = null;
+        if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
+            ChatResponse.Choice choice = response.getChoices().get(0);
+            entry.finishReason(choice.getFinishReason());
+            answer = choice.getMessage() != null ? choice.getMessage().getContent() : null;
+        }
+        if (error != null) {
+            entry.error(redact(String.valueOf(error.getMessage())));
+        }
+        
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            entry.prompt(redact(renderPrompt(request)));
+            entry.response(answer != null ? redact(answer) : null);
+        }
+        
+        journalWriter.offer(entry.build());
+    }
+    
+    String redact(String text) {
+        return redactPattern != null ? redactPattern.matcher(text).replaceAll(REDACTED) : text;
+    }
+    
+    private static String renderPrompt(ChatRequest request) {
+        StringBuilder prompt = new StringBuilder();
+        if (request.getMessages() != null) {
+            for (ChatRequest.Message message : request.getMessages()) {
+                prompt.append(message.getRole()).append(": ").append(message.getContent()).append('\n');
+            }
+        }
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.llm.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer.
+ * Producers claim a sequence with a CAS and never block; {@link #offer} returns false when the
+ * buffer is full so callers can drop instead of waiting for the consumer.
+ */
+public final class RingBuffer<E> {
+    
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    
+    public RingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.capacity = size;
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Publish an element. Safe to call from any thread.
+     * 
+     * @return false if the buffer is full and the element was not added
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Ring buffer elements must not be null");
+        }
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() >= capacity) {
+                return false;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) sequence & mask, element);
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Take the next element. Must only be called from the single consumer thread.
+     * 
+     * @return the next element, or null if none has been published yet
+     */
+    public E poll() {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head.lazySet(sequence + 1);
+        return element;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.llm.service;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a caller needs its answer. A deadline travels in the Reactor
+ * {@link Context} of a request, so every stage (compaction, routing, escalation, fan-out,
+ * embedding batches) sees the same budget and caps its own timeout to what is left of it.
+ */
+public final class Deadline {
+    
+    public static final String HEADER = "X-Request-Timeout";
+    
+    private static final Class<Deadline> CONTEXT_KEY = Deadline.class;
+    
+    private final long expiresAtNanos;
+    
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+    
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+    
+    /**
+     * Resolve the caller's timeout, preferring the header over the request field.
+     *
+     * @return the deadline, or null when the caller did not ask for one
+     */
+    public static Deadline fromMillis(Long headerMillis, Integer requestMillis) {
+        Long millis = headerMillis != null ? headerMillis : requestMillis != null ? Long.valueOf(requestMillis) : null;
+        if (millis == null) {
+            return null;
+        }
+        if (millis <= 0) {
+            throw new IllegalArgumentException(HEADER + " must be a positive number of milliseconds");
+        }
+        return after(Duration.ofMillis(millis));
+    }
+    
+    /**
+     * The deadline of the current request, or null when there is none.
+     */
+    public static Deadline from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+    
+    public static Context put(Context context, Deadline deadline) {
+        return deadline != null ? context.put(CONTEXT_KEY, deadline) : context;
+    }
+    
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+    
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+    
+    /**
+     * The shorter of {@code timeout} and the time left before this deadline.
+     */
+    public Duration cap(Duration timeout) {
+        Duration remaining = remaining();
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+    
+    /**
+     * Apply {@code deadline} to {@code timeout}, tolerating requests without a deadline.
+     */
+    public static Duration cap(Deadline deadline, Duration timeout) {
+        return deadline != null ? deadline.cap(timeout) : timeout;
+    }
+}
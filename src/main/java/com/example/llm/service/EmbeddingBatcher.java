@@ -0,0 +1,180 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-text embedding requests for the same provider/model into one
+ * upstream call. A batch is flushed when it reaches {@code max-batch-size} or when the
+ * {@code batch-window-ms} started by its first element elapses, whichever comes first.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmbeddingBatcher {
+    
+    private final LlmProperties llmProperties;
+    private final MeterRegistry meterRegistry;
+    
+    private final Scheduler scheduler = Schedulers.parallel();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    
+    /**
+     * Queue one input for embedding. Inputs are only coalesced with others for the same provider and model.
+     *
+     * @param provider the provider the batch is sent to
+     * @param model the embedding model
+     * @param input the text to embed
+     * @param dispatcher sends a list of inputs upstream and returns their vectors in the same order
+     * @return the vector for {@code input}
+     */
+    public Mono<float[]> submit(String provider, String model, String input, 
+                                Function<List<String>, Mono<List<float[]>>> dispatcher) {
+        String key = provider + "/" + model;
+        return Mono.create(sink -> {
+            Pending item = new Pending(input, sink);
+            sink.onCancel(() -> item.cancelled = true);
+            // A batch leaves the map when it is drained; an add that races with that goes to a new batch
+            Batch batch;
+            do {
+                batch = batches.computeIfAbsent(key, name -> new Batch(name, provider));
+            } while (!batch.add(item, dispatcher));
+        });
+    }
+    
+    int getOpenBatches() {
+        return batches.size();
+    }
+    
+    private final class Batch {
+        private final String key;
+        private final String provider;
+        private List<Pending> pending = new ArrayList<>();
+        // The dispatcher of the first element is used for the whole batch
+        private Function<List<String>, Mono<List<float[]>>> dispatcher;
+        private Disposable timer;
+        private boolean closed;
+        
+        Batch(String key, String provider) {
+            this.key = key;
+            this.provider = provider;
+        }
+        
+        /**
+         * @return false if the batch was already drained and removed, in which case nothing was added
+         */
+        boolean add(Pending item, Function<List<String>, Mono<List<float[]>>> itemDispatcher) {
+            LlmProperties.Embeddings settings = llmProperties.getEmbeddings();
+            List<Pending> ready = null;
+            Function<List<String>, Mono<List<float[]>>> batchDispatcher;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                pending.add(item);
+                if (pending.size() == 1) {
+                    dispatcher = itemDispatcher;
+                }
+                batchDispatcher = dispatcher;
+                if (pending.size() >= settings.getMaxBatchSize()) {
+                    ready = drain();
+                } else if (pending.size() == 1) {
+                    timer = scheduler.schedule(this::flush, settings.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+                }
+            }
+            if (ready != null) {
+                dispatch(ready, batchDispatcher);
+            }
+            return true;
+        }
+        
+        void flush() {
+            List<Pending> ready;
+            Function<List<String>, Mono<List<float[]>>> batchDispatcher;
+            synchronized (this) {
+                batchDispatcher = dispatcher;
+                ready = drain();
+            }
+            if (!ready.isEmpty()) {
+                dispatch(ready, batchDispatcher);
+            }
+        }
+        
+        // Must be called while holding the batch lock. The batch is retired so that keys do not accumulate.
+        private List<Pending> drain() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+            closed = true;
+            batches.remove(key, this);
+            List<Pending> ready = pending;
+            pending = new ArrayList<>();
+            return ready;
+        }
+        
+        private void dispatch(List<Pending> queued, Function<List<String>, Mono<List<float[]>>> batchDispatcher) {
+            // Callers that gave up (deadline passed) while queued are not sent upstream
+            List<Pending> ready = new ArrayList<>(queued.size());
+            List<String> inputs = new ArrayList<>(queued.size());
+            for (Pending item : queued) {
+                if (!item.cancelled) {
+                    ready.add(item);
+                    inputs.add(item.input);
+                }
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            
+            DistributionSummary.builder("llm.embeddings.batch.size")
+                    .description("Inputs sent per upstream embeddings call")
+                    .tag("provider", provider)
+                    .register(meterRegistry)
+                    .record(ready.size());
+            log.debug("Dispatching embeddings batch of {} for '{}'", ready.size(), key);
+            
+            batchDispatcher.apply(inputs).subscribe(
+                    vectors -> {
+                        if (vectors.size() != ready.size()) {
+                            IllegalStateException mismatch = new IllegalStateException(
+                                    "Expected " + ready.size() + " embeddings but received " + vectors.size());
+                            ready.forEach(item -> item.sink.error(mismatch));
+                            return;
+                        }
+                        for (int i = 0; i < ready.size(); i++) {
+                            ready.get(i).sink.success(vectors.get(i));
+                        }
+                    },
+                    error -> ready.forEach(item -> item.sink.error(error))
+            );
+        }
+    }
+    
+    private static final class Pending {
+        private final String input;
+        private final MonoSink<float[]> sink;
+        private volatile boolean cancelled;
+        
+        Pending(String input, MonoSink<float[]> sink) {
+            this.input = input;
+            this.sink = sink;
+        }
+    }
+}
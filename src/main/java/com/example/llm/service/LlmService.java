@@ -2,8 +2,14 @@ package com.example.llm.service;
 
 import com.example.llm.dto.ChatRequest;
 import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.EmbeddingRequest;
+import com.example.llm.dto.EmbeddingResponse;
+import com.example.llm.dto.FanoutResult;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface LlmService {
     
     /**
@@ -15,6 +21,17 @@ public interface LlmService {
      */
     Mono<ChatResponse> chatCompletion(ChatRequest request, String provider);
     
+    /**
+     * Send a chat completion request, letting the model router pick a cheaper or faster
+     * model when the request does not name one
+     * 
+     * @param request the chat request
+     * @param provider the LLM provider to use (optional, uses default if null)
+     * @param taskHint a hint describing the kind of task, used by routing rules (optional)
+     * @return the chat response
+     */
+    Mono<ChatResponse> chatCompletion(ChatRequest request, String provider, String taskHint);
+    
     /**
      * Send a chat completion request using the default provider
      * 
@@ -23,6 +40,27 @@ public interface LlmService {
      */
     Mono<ChatResponse> chatCompletion(ChatRequest request);
     
+    /**
+     * Send the same chat request to several providers concurrently, emitting each result
+     * as soon as its provider answers
+     * 
+     * @param request the chat request
+     * @param providers the providers to query (optional, uses all available providers if empty)
+     * @param firstN stop after this many successful answers and cancel the rest (optional)
+     * @return the per-provider results in completion order
+     */
+    Flux<FanoutResult> fanOut(ChatRequest request, List<String> providers, Integer firstN);
+    
+    /**
+     * Create embeddings for one or more inputs. Concurrent requests for the same provider
+     * and model are coalesced into a single upstream call.
+     * 
+     * @param request the embedding request
+     * @param provider the LLM provider to use (optional, uses default if null)
+     * @return the embeddings, in input order
+     */
+    Mono<EmbeddingResponse> embeddings(EmbeddingRequest request, String provider);
+    
     /**
      * Check if a provider is available and configured
      * 
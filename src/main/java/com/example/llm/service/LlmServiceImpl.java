@@ -1,20 +1,48 @@
 package com.example.llm.service;
 
+import com.example.llm.capture.TrafficCapture;
 import com.example.llm.config.LlmProperties;
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSettings;
+import com.example.llm.config.ProviderSnapshot;
 import com.example.llm.dto.ChatRequest;
 import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.EmbeddingRequest;
+import com.example.llm.dto.EmbeddingResponse;
+import com.example.llm.dto.FanoutResult;
 import com.example.llm.exception.LlmException;
+import com.example.llm.health.ProviderHealthMonitor;
+import com.example.llm.journal.RequestJournal;
+import com.example.llm.usage.UsageLedger;
+import com.example.llm.warmup.ModelWarmer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -22,86 +50,480 @@ import java.util.Map;
 public class LlmServiceImpl implements LlmService {
     
     private final LlmProperties llmProperties;
+    private final ProviderRegistry providerRegistry;
     private final WebClient webClient;
+    private final ModelRouter modelRouter;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final RequestJournal requestJournal;
+    private final TrafficCapture trafficCapture;
+    private final PromptCompactor promptCompactor;
+    private final ProviderHealthMonitor healthMonitor;
+    private final UsageLedger usageLedger;
+    private final ModelWarmer modelWarmer;
+    private final MeterRegistry meterRegistry;
     
     @Override
     public Mono<ChatResponse> chatCompletion(ChatRequest request, String provider) {
-        String targetProvider = StringUtils.hasText(provider) ? provider : llmProperties.getDefaultProvider();
+        return chatCompletion(request, provider, null);
+    }
+    
+    @Override
+    public Mono<ChatResponse> chatCompletion(ChatRequest request, String provider, String taskHint) {
+        if (usageLedger.isOverQuota(request.getUser())) {
+            return Mono.error(quotaExceeded(request.getUser(), provider));
+        }
+        
+        Mono<ChatResponse> exchange = compact(request).flatMap(compacted -> route(compacted, provider, taskHint));
+        return trafficCapture.capture(request, provider, taskHint, exchange);
+    }
+    
+    @Override
+    public Mono<ChatResponse> chatCompletion(ChatRequest request) {
+        return chatCompletion(request, null);
+    }
+    
+    @Override
+    public Flux<FanoutResult> fanOut(ChatRequest request, List<String> providers, Integer firstN) {
+        List<String> targets = providers != null && !providers.isEmpty() 
+                ? providers : Arrays.asList(getAvailableProviders());
         
-        if (!isProviderAvailable(targetProvider)) {
+        if (usageLedger.isOverQuota(request.getUser())) {
+            LlmException error = quotaExceeded(request.getUser(), null);
+            return Flux.fromIterable(targets).map(target -> failure(target, 0L, error));
+        }
+        
+        // Compaction (and its summary call) runs once and is shared by all providers
+        Flux<FanoutResult> results = compact(request).flatMapMany(compacted -> Flux.fromIterable(targets)
+                .flatMap(target -> timedCompletion(request, compacted, target), Math.max(1, targets.size())));
+        
+        if (firstN != null && firstN > 0) {
+            // Completing the stream cancels the providers that are still running
+            AtomicInteger wins = new AtomicInteger();
+            results = results.takeUntil(result -> result.isSuccess() && wins.incrementAndGet() >= firstN);
+        }
+        return results;
+    }
+    
+    @Override
+    public Mono<EmbeddingResponse> embeddings(EmbeddingRequest request, String provider) {
+        ProviderSnapshot snapshot = providerRegistry.current();
+        String targetProvider = StringUtils.hasText(provider) ? provider : snapshot.getDefaultProvider();
+        
+        if (usageLedger.isOverQuota(request.getUser())) {
+            return Mono.error(quotaExceeded(request.getUser(), targetProvider));
+        }
+        if (!snapshot.isAvailable(targetProvider)) {
             return Mono.error(new LlmException(
                     "Provider '" + targetProvider + "' is not available or not configured", 
                     targetProvider, 
                     400
             ));
         }
+        if (!healthMonitor.isHealthy(targetProvider)) {
+            return Mono.error(unhealthy(targetProvider));
+        }
+        
+        ProviderSettings settings = snapshot.getProvider(targetProvider);
+        String model = StringUtils.hasText(request.getModel()) ? request.getModel() : settings.getEmbeddingModel();
+        if (!StringUtils.hasText(model)) {
+            return Mono.error(new LlmException(
+                    "No embedding model configured for provider '" + targetProvider + "'", 
+                    targetProvider, 
+                    400
+            ));
+        }
+        
+        Function<List<String>, Mono<List<float[]>>> dispatcher = 
+                inputs -> sendEmbeddings(settings, model, inputs);
+        
+        Mono<List<float[]>> vectors = Mono.deferContextual(context -> {
+            // Inputs still queued in a batch when the deadline passes are dropped before dispatch
+            Deadline deadline = Deadline.from(context);
+            Mono<List<float[]>> batched = Flux.fromIterable(request.getInput())
+                    .flatMapSequential(input -> embeddingBatcher.submit(targetProvider, model, input, dispatcher))
+                    .collectList();
+            return deadline != null ? batched.timeout(deadline.remaining()) : batched;
+        });
+        return toEmbeddingResponse(mapProviderErrors(vectors, targetProvider), request, targetProvider, model)
+                .doOnNext(response -> usageLedger.record(
+                        request.getUser(), targetProvider, model, response.getUsage().getPromptTokens(), 0));
+    }
+    
+    @Override
+    public boolean isProviderAvailable(String provider) {
+        if (!StringUtils.hasText(provider)) {
+            return false;
+        }
         
-        LlmProperties.ProviderConfig config = llmProperties.getProviders().get(targetProvider);
+        return providerRegistry.current().isAvailable(provider) && healthMonitor.isHealthy(provider);
+    }
+    
+    @Override
+    public String[] getAvailableProviders() {
+        return Arrays.stream(providerRegistry.current().getEnabledProviders())
+                .filter(healthMonitor::isHealthy)
+                .toArray(String[]::new);
+    }
+    
+    /**
+     * Route and send an already compacted request to one provider; the capture still records the
+     * request as the caller sent it.
+     */
+    private Mono<FanoutResult> timedCompletion(ChatRequest request, ChatRequest compacted, String provider) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return trafficCapture.capture(request, provider, null, route(compacted, provider, null))
+                    .map(response -> FanoutResult.builder()
+                            .provider(provider)
+                            .success(true)
+                            .latencyMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                            .response(response)
+                            .usage(response.getUsage())
+                            .build())
+                    .onErrorResume(ex -> Mono.just(failure(provider, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), ex)));
+        });
+    }
+    
+    private static FanoutResult failure(String provider, long latencyMs, Throwable ex) {
+        return FanoutResult.builder()
+                .provider(provider)
+                .success(false)
+                .latencyMs(latencyMs)
+                .error(ex.getMessage())
+                .statusCode(ex instanceof LlmException ? ((LlmException) ex).getStatusCode() : 500)
+                .build();
+    }
+    
+    private Mono<ChatRequest> compact(ChatRequest request) {
+        if (!promptCompactor.isEnabled() || request.getMessages() == null) {
+            return Mono.just(request);
+        }
+        
+        return Mono.defer(() -> {
+            LlmProperties.Compaction settings = llmProperties.getCompaction();
+            PromptCompactor.Result result = promptCompactor.compact(request.getMessages());
+            
+            Mono<List<ChatRequest.Message>> messages = Mono.just(result.getMessages());
+            if (!result.getDropped().isEmpty() && Boolean.TRUE.equals(settings.getSummarize())) {
+                messages = summarize(result.getDropped(), settings, request.getUser())
+                        .map(summary -> promptCompactor.withSummary(result.getMessages(), summary))
+                        .defaultIfEmpty(result.getMessages())
+                        .onErrorResume(ex -> {
+                            log.debug("Summarizing dropped turns failed, sending truncated prompt: {}", ex.getMessage());
+                            return Mono.just(result.getMessages());
+                        });
+            }
+            
+            return messages.map(compacted -> {
+                DistributionSummary.builder("llm.compaction.tokens.saved")
+                        .description("Estimated prompt tokens removed by compaction")
+                        .baseUnit("tokens")
+                        .register(meterRegistry)
+                        .record(Math.max(0, result.getTokensBefore() - TokenEstimator.estimate(compacted)));
+                return request.toBuilder().messages(compacted).build();
+            });
+        });
+    }
+    
+    private Mono<String> summarize(List<ChatRequest.Message> dropped, LlmProperties.Compaction settings, String user) {
+        // Keep the transcript itself within the prompt budget, favouring the most recent dropped turns
+        int maxChars = TokenEstimator.charsFor(settings.getMaxPromptTokens() != null ? settings.getMaxPromptTokens() : 4000);
+        StringBuilder transcript = new StringBuilder();
+        for (int i = dropped.size() - 1; i >= 0 && transcript.length() < maxChars; i--) {
+            ChatRequest.Message message = dropped.get(i);
+            transcript.insert(0, message.getRole() + ": " + message.getContent() + "\n");
+        }
+        
+        ChatRequest summaryRequest = ChatRequest.builder()
+                .messages(Arrays.asList(
+                        ChatRequest.Message.builder()
+                                .role("system")
+                                .content("Summarize the following conversation in a few sentences, keeping facts, "
+                                        + "decisions and open questions.")
+                                .build(),
+                        ChatRequest.Message.builder()
+                                .role("user")
+                                .content(transcript.toString())
+                                .build()))
+                .maxTokens(settings.getSummaryMaxTokens())
+                .temperature(0.0)
+                .user(user)
+                .build();
+        String provider = StringUtils.hasText(settings.getSummaryProvider()) 
+                ? settings.getSummaryProvider() : providerRegistry.current().getDefaultProvider();
+        
+        return execute(summaryRequest, provider, settings.getSummaryModel())
+                .flatMap(response -> {
+                    if (response.getChoices() == null || response.getChoices().isEmpty() 
+                            || response.getChoices().get(0).getMessage() == null) {
+                        return Mono.empty();
+                    }
+                    return Mono.justOrEmpty(response.getChoices().get(0).getMessage().getContent());
+                })
+                .filter(StringUtils::hasText);
+    }
+    
+    private Mono<ChatResponse> route(ChatRequest request, String provider, String taskHint) {
+        RoutingDecision decision = modelRouter.route(request, provider, taskHint, this::isProviderAvailable);
+        if (decision == null) {
+            String targetProvider = StringUtils.hasText(provider) ? provider : providerRegistry.current().getDefaultProvider();
+            return execute(request, targetProvider, null);
+        }
+        
+        return Mono.defer(() -> {
+            AtomicReference<RoutingDecision> served = new AtomicReference<>(decision);
+            return execute(request, decision.getProvider(), decision.getModel())
+                    // A target that is down or misconfigured must not fail every request the rule matches
+                    .onErrorResume(LlmServiceImpl::isTargetError, ex -> {
+                        RoutingDecision fallback = modelRouter.fallback(decision, this::isProviderAvailable);
+                        if (fallback == null) {
+                            return Mono.error(ex);
+                        }
+                        served.set(fallback);
+                        return execute(request, fallback.getProvider(), fallback.getModel());
+                    })
+                    .flatMap(response -> {
+                        RoutingDecision current = served.get();
+                        if (!current.canEscalate() || !modelRouter.shouldEscalate(response) 
+                                || !isProviderAvailable(current.getEscalationProvider())) {
+                            return Mono.just(response);
+                        }
+                        modelRouter.recordEscalation(current);
+                        return execute(request, current.getEscalationProvider(), current.getEscalationModel());
+                    });
+        });
+    }
+    
+    private Mono<ChatResponse> execute(ChatRequest request, String targetProvider, String routedModel) {
+        // Read the configuration once so the whole exchange sees a single consistent version
+        ProviderSnapshot snapshot = providerRegistry.current();
+        if (!snapshot.isAvailable(targetProvider)) {
+            return Mono.error(new LlmException(
+                    "Provider '" + targetProvider + "' is not available or not configured", 
+                    targetProvider, 
+                    400
+            ));
+        }
+        if (!healthMonitor.isHealthy(targetProvider)) {
+            return Mono.error(unhealthy(targetProvider));
+        }
+        
+        ProviderSettings settings = snapshot.getProvider(targetProvider);
         
         // Prepare the request
-        ChatRequest processedRequest = processRequest(request, config, targetProvider);
+        ChatRequest processedRequest = processRequest(request, snapshot, settings, routedModel);
+        String model = processedRequest.getModel();
         
-        log.debug("Sending request to provider '{}' with model '{}'", targetProvider, processedRequest.getModel());
+        log.debug("Sending request to provider '{}' with model '{}'", targetProvider, model);
         
-        return webClient.post()
-                .uri(config.getBaseUrl() + "/chat/completions")
-                .headers(headers -> configureHeaders(headers, config, targetProvider))
-                .bodyValue(processedRequest)
+        Mono<ChatResponse> exchange = Mono.deferContextual(context -> {
+            Deadline deadline = Deadline.from(context);
+            if (deadline != null && deadline.isExpired()) {
+                return Mono.error(new TimeoutException("Deadline expired before the request was sent"));
+            }
+            
+            Duration limit = Deadline.cap(deadline, settings.getTimeout());
+            // A timeout imposed by the caller's deadline says nothing about the target
+            boolean deadlineBound = limit.compareTo(settings.getTimeout()) < 0;
+            
+            long start = System.nanoTime();
+            return webClient.post()
+                    .uri(settings.getChatCompletionsUrl())
+                    .headers(settings::applyHeaders)
+                    .bodyValue(processedRequest)
+                    .retrieve()
+                    .bodyToMono(ChatResponse.class)
+                    .map(response -> {
+                        response.setProvider(targetProvider);
+                        return response;
+                    })
+                    .timeout(limit)
+                    .doOnSuccess(response -> recordExchange(context, targetProvider, processedRequest, response, null, System.nanoTime() - start))
+                    .doOnError(ex -> {
+                        recordExchange(context, targetProvider, processedRequest, null, ex, System.nanoTime() - start);
+                        if (ex instanceof TimeoutException) {
+                            recordWastedWork(targetProvider, processedRequest, "timeout", System.nanoTime() - start);
+                        }
+                        if (ex instanceof TimeoutException ? !deadlineBound : isTargetError(ex)) {
+                            modelRouter.recordFailure(targetProvider, model);
+                        }
+                    })
+                    // Cancelling here aborts the HTTP exchange, which closes its connection instead of reading the rest
+                    .doOnCancel(() -> recordWastedWork(targetProvider, processedRequest, "cancelled", System.nanoTime() - start));
+        });
+        return mapProviderErrors(pinned(snapshot, exchange), targetProvider);
+    }
+    
+    private Mono<EmbeddingResponse> toEmbeddingResponse(Mono<List<float[]>> vectors,
+                                                         EmbeddingRequest request,
+                                                         String provider,
+                                                         String model) {
+        boolean base64 = "base64".equals(request.getEncodingFormat());
+        return vectors.map(list -> {
+            List<EmbeddingResponse.Embedding> data = new ArrayList<>(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                data.add(EmbeddingResponse.Embedding.builder()
+                        .object("embedding")
+                        .index(i)
+                        .embedding(base64 ? encodeBase64(list.get(i)) : list.get(i))
+                        .build());
+            }
+            // Upstream usage covers the whole coalesced batch, so report this request's own estimate
+            int promptTokens = 0;
+            for (String input : request.getInput()) {
+                promptTokens += TokenEstimator.estimate(input);
+            }
+            return EmbeddingResponse.builder()
+                    .object("list")
+                    .model(model)
+                    .provider(provider)
+                    .data(data)
+                    .usage(ChatResponse.Usage.builder().promptTokens(promptTokens).totalTokens(promptTokens).build())
+                    .build();
+        });
+    }
+    
+    private Mono<List<float[]>> sendEmbeddings(ProviderSettings settings, String model, List<String> inputs) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);
+        body.put("input", inputs);
+        
+        Mono<List<float[]>> exchange = webClient.post()
+                .uri(settings.getEmbeddingsUrl())
+                .headers(settings::applyHeaders)
+                .bodyValue(body)
                 .retrieve()
-                .bodyToMono(ChatResponse.class)
-                .map(response -> {
-                    response.setProvider(targetProvider);
-                    return response;
-                })
-                .timeout(Duration.ofMillis(config.getTimeout()))
+                .bodyToMono(UpstreamEmbeddings.class)
+                .map(UpstreamEmbeddings::vectors)
+                .timeout(settings.getTimeout());
+        return mapProviderErrors(exchange, settings.getName());
+    }
+    
+    private LlmException quotaExceeded(String user, String provider) {
+        usageLedger.rejected(user);
+        return new LlmException(
+                "Token quota exceeded for user '" + usageLedger.getQuota(user).getUser() + "'", 
+                provider, 
+                429
+        );
+    }
+    
+    private LlmException unhealthy(String provider) {
+        return new LlmException(
+                "Provider '" + provider + "' is failing health checks: " + healthMonitor.getHealth(provider).getError(), 
+                provider, 
+                503
+        );
+    }
+    
+    private static String encodeBase64(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+    
+    /**
+     * Count the exchange as in flight on {@code snapshot} so a reload can tell when the old version has drained.
+     */
+    private <T> Mono<T> pinned(ProviderSnapshot snapshot, Mono<T> exchange) {
+        return Mono.defer(() -> {
+            snapshot.acquire();
+            return exchange.doFinally(signal -> providerRegistry.release(snapshot));
+        });
+    }
+    
+    private <T> Mono<T> mapProviderErrors(Mono<T> exchange, String provider) {
+        return exchange
                 .onErrorMap(WebClientResponseException.class, ex -> 
                     new LlmException(
                             "Provider error: " + ex.getResponseBodyAsString(), 
-                            targetProvider, 
+                            provider, 
                             ex.getStatusCode().value(), 
                             ex
                     )
                 )
+                .onErrorMap(TimeoutException.class, ex -> 
+                    new LlmException(
+                            "Provider '" + provider + "' did not answer within the deadline", 
+                            provider, 
+                            504, 
+                            ex
+                    )
+                )
                 .onErrorMap(Exception.class, ex -> 
                     !(ex instanceof LlmException) ? 
-                        new LlmException("Unexpected error: " + ex.getMessage(), targetProvider, ex) : 
+                        new LlmException("Unexpected error: " + ex.getMessage(), provider, ex) : 
                         ex
                 );
     }
     
-    @Override
-    public Mono<ChatResponse> chatCompletion(ChatRequest request) {
-        return chatCompletion(request, null);
+    /**
+     * Whether an upstream error points at the provider or model rather than at the request itself.
+     */
+    private static boolean isTargetError(Throwable error) {
+        int status;
+        if (error instanceof LlmException) {
+            status = ((LlmException) error).getStatusCode();
+        } else if (error instanceof WebClientResponseException) {
+            status = ((WebClientResponseException) error).getRawStatusCode();
+        } else {
+            // Connection failures and unreadable responses
+            return true;
+        }
+        return status >= 500 || status == 401 || status == 403 || status == 404 || status == 408 || status == 429;
     }
     
-    @Override
-    public boolean isProviderAvailable(String provider) {
-        if (!StringUtils.hasText(provider)) {
-            return false;
+    private void recordExchange(ContextView context, String provider, ChatRequest request, 
+                                ChatResponse response, Throwable error, long nanos) {
+        String model = request.getModel();
+        meterRegistry.timer("llm.upstream.latency",
+                "provider", provider,
+                "model", providerRegistry.current().modelTag(provider, model),
+                "outcome", error == null ? "success" : "error")
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (error == null) {
+            modelRouter.recordLatency(provider, model, nanos);
+            modelWarmer.recordRequest(provider, model, nanos);
         }
-        
-        LlmProperties.ProviderConfig config = llmProperties.getProviders().get(provider);
-        return config != null && 
-               Boolean.TRUE.equals(config.getEnabled()) && 
-               StringUtils.hasText(config.getBaseUrl()) &&
-               StringUtils.hasText(config.getApiKey());
+        requestJournal.record(provider, request, response, error, nanos);
+        if (response != null) {
+            ChatResponse.Usage usage = response.getUsage();
+            // Providers that omit usage are charged the estimated prompt size
+            usageLedger.record(request.getUser(), provider, model,
+                    usage != null && usage.getPromptTokens() != null 
+                            ? usage.getPromptTokens() : TokenEstimator.estimate(request.getMessages()),
+                    usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+        }
+        trafficCapture.recordUpstream(context, provider, request, response, error, nanos);
     }
     
-    @Override
-    public String[] getAvailableProviders() {
-        return llmProperties.getProviders().entrySet().stream()
-                .filter(entry -> Boolean.TRUE.equals(entry.getValue().getEnabled()))
-                .map(Map.Entry::getKey)
-                .toArray(String[]::new);
+    /**
+     * Record an upstream exchange abandoned before it completed. Prompt tokens are estimated since
+     * the provider never reported usage; they are typically billed even though the answer is discarded.
+     */
+    private void recordWastedWork(String provider, ChatRequest request, String reason, long nanos) {
+        DistributionSummary.builder("llm.upstream.wasted.tokens")
+                .description("Estimated prompt tokens sent upstream for exchanges that were abandoned")
+                .baseUnit("tokens")
+                .tag("provider", provider)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .record(TokenEstimator.estimate(request.getMessages()));
+        meterRegistry.timer("llm.upstream.wasted.time", "provider", provider, "reason", reason)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        log.debug("Abandoned upstream exchange with '{}' after {} ms ({})", 
+                provider, TimeUnit.NANOSECONDS.toMillis(nanos), reason);
     }
     
-    private ChatRequest processRequest(ChatRequest request, LlmProperties.ProviderConfig config, String provider) {
+    private ChatRequest processRequest(ChatRequest request, ProviderSnapshot snapshot, ProviderSettings settings, String routedModel) {
+        String model = StringUtils.hasText(request.getModel()) ? request.getModel()
+                : StringUtils.hasText(routedModel) ? routedModel : settings.getDefaultModel();
         ChatRequest.ChatRequestBuilder builder = ChatRequest.builder()
                 .messages(request.getMessages())
-                .model(StringUtils.hasText(request.getModel()) ? request.getModel() : config.getDefaultModel())
-                .maxTokens(request.getMaxTokens() != null ? request.getMaxTokens() : llmProperties.getMaxTokens())
-                .temperature(request.getTemperature() != null ? request.getTemperature() : llmProperties.getTemperature())
-                .stream(request.getStream() != null ? request.getStream() : llmProperties.getStream())
+                .model(model)
+                .maxTokens(request.getMaxTokens() != null ? request.getMaxTokens() : snapshot.getMaxTokens())
+                .temperature(request.getTemperature() != null ? request.getTemperature() : snapshot.getTemperature())
+                .stream(request.getStream() != null ? request.getStream() : snapshot.getStream())
                 .topP(request.getTopP())
                 .frequencyPenalty(request.getFrequencyPenalty())
                 .presencePenalty(request.getPresencePenalty())
@@ -109,7 +531,7 @@ public class LlmServiceImpl implements LlmService {
                 .user(request.getUser());
         
         // Handle provider-specific adjustments
-        if ("anthropic".equals(provider)) {
+        if ("anthropic".equals(settings.getName())) {
             // Anthropic uses different parameter names
             builder.additionalProperties(createAnthropicSpecificParams(request));
         }
@@ -123,26 +545,27 @@ public class LlmServiceImpl implements LlmService {
         return params;
     }
     
-    private void configureHeaders(org.springframework.http.HttpHeaders headers, 
-                                LlmProperties.ProviderConfig config, 
-                                String provider) {
-        headers.set("Content-Type", "application/json");
-        
-        switch (provider) {
-            case "openai":
-            case "azure-openai":
-            case "ollama":
-                headers.set("Authorization", "Bearer " + config.getApiKey());
-                break;
-            case "anthropic":
-                headers.set("x-api-key", config.getApiKey());
-                headers.set("anthropic-version", "2023-06-01");
-                break;
-            case "huggingface":
-                headers.set("Authorization", "Bearer " + config.getApiKey());
-                break;
-            default:
-                headers.set("Authorization", "Bearer " + config.getApiKey());
+    /**
+     * Upstream embeddings payload, bound straight to primitive arrays to avoid boxing every component.
+     */
+    @Data
+    static class UpstreamEmbeddings {
+        private List<Item> data;
+        
+        List<float[]> vectors() {
+            List<Item> items = new ArrayList<>(data);
+            items.sort(Comparator.comparingInt(Item::getIndex));
+            List<float[]> vectors = new ArrayList<>(items.size());
+            for (Item item : items) {
+                vectors.add(item.getEmbedding());
+            }
+            return vectors;
+        }
+        
+        @Data
+        static class Item {
+            private int index;
+            private float[] embedding;
         }
     }
 }
@@ -0,0 +1,285 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Picks a provider/model for requests that did not ask for a specific model.
+ * Rules match on estimated prompt size, requested completion size and an optional task hint;
+ * among a rule's targets the one with the lowest observed latency wins. Targets that fail are
+ * skipped for a back-off that grows with consecutive failures.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModelRouter {
+    
+    private static final String FINISH_REASON_LENGTH = "length";
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long MAX_FAILURE_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(5);
+    
+    private final LlmProperties llmProperties;
+    private final MeterRegistry meterRegistry;
+    
+    // Latency and failures of configured routing targets, keyed by "provider/model"
+    private final Map<String, TargetStats> targetStats = new ConcurrentHashMap<>();
+    
+    /**
+     * Resolve a routing decision for the request.
+     *
+     * @param request the incoming chat request
+     * @param provider the provider requested by the caller, or null
+     * @param taskHint the caller supplied task hint, or null
+     * @param available predicate telling whether a provider can currently take traffic
+     * @return the decision, or null when the request should go through the default path
+     */
+    public RoutingDecision route(ChatRequest request, String provider, String taskHint, Predicate<String> available) {
+        LlmProperties.Routing routing = llmProperties.getRouting();
+        if (routing == null || !Boolean.TRUE.equals(routing.getEnabled()) || StringUtils.hasText(request.getModel())) {
+            return null;
+        }
+        
+        int promptTokens = TokenEstimator.estimate(request.getMessages());
+        int completionTokens = request.getMaxTokens() != null ? request.getMaxTokens() : llmProperties.getMaxTokens();
+        
+        for (LlmProperties.RoutingRule rule : routing.getRules()) {
+            if (!matches(rule, promptTokens, completionTokens, taskHint)) {
+                continue;
+            }
+            LlmProperties.RoutingTarget target = selectTarget(rule.getTargets(), provider, available, null);
+            if (target == null) {
+                continue;
+            }
+            
+            LlmProperties.RoutingTarget escalation = rule.getEscalateTo();
+            RoutingDecision decision = new RoutingDecision(
+                    rule.getName(),
+                    target.getProvider(),
+                    target.getModel(),
+                    promptTokens,
+                    escalation != null ? escalation.getProvider() : null,
+                    escalation != null ? escalation.getModel() : null,
+                    provider
+            );
+            
+            Counter.builder("llm.routing.decisions")
+                    .description("Requests routed by a routing rule")
+                    .tag("rule", String.valueOf(rule.getName()))
+                    .tag("provider", target.getProvider())
+                    .tag("model", String.valueOf(target.getModel()))
+                    .register(meterRegistry)
+                    .increment();
+            log.debug("Routing rule '{}' sent request (~{} prompt tokens) to {}/{}",
+                    rule.getName(), promptTokens, target.getProvider(), target.getModel());
+            return decision;
+        }
+        return null;
+    }
+    
+    /**
+     * Whether a response from a routed model is unusable and should be retried on the escalation target.
+     */
+    public boolean shouldEscalate(ChatResponse response) {
+        if (response.getChoices() == null || response.getChoices().isEmpty()) {
+            return true;
+        }
+        ChatResponse.Choice choice = response.getChoices().get(0);
+        if (FINISH_REASON_LENGTH.equals(choice.getFinishReason())) {
+            return true;
+        }
+        return choice.getMessage() == null || !StringUtils.hasText(choice.getMessage().getContent());
+    }
+    
+    public void recordEscalation(RoutingDecision decision) {
+        Counter.builder("llm.routing.escalations")
+                .description("Routed requests retried on a larger model")
+                .tag("rule", String.valueOf(decision.getRule()))
+                .tag("provider", decision.getEscalationProvider())
+                .tag("model", String.valueOf(decision.getEscalationModel()))
+                .register(meterRegistry)
+                .increment();
+        log.debug("Escalating request from {}/{} to {}/{}", decision.getProvider(), decision.getModel(),
+                decision.getEscalationProvider(), decision.getEscalationModel());
+    }
+    
+    /**
+     * Pick another target for a routed request whose upstream call failed: the next best target of
+     * the same rule, otherwise the rule's escalation target.
+     *
+     * @return the new decision, or null when there is nowhere left to go
+     */
+    public RoutingDecision fallback(RoutingDecision failed, Predicate<String> available) {
+        LlmProperties.RoutingRule rule = findRule(failed.getRule());
+        if (rule == null) {
+            return null;
+        }
+        
+        RoutingDecision next;
+        LlmProperties.RoutingTarget target = selectTarget(rule.getTargets(), failed.getRequestedProvider(), available, failed);
+        if (target != null) {
+            next = new RoutingDecision(failed.getRule(), target.getProvider(), target.getModel(), failed.getPromptTokens(),
+                    failed.getEscalationProvider(), failed.getEscalationModel(), failed.getRequestedProvider());
+        } else if (failed.canEscalate() && available.test(failed.getEscalationProvider())
+                && !isSameTarget(failed, failed.getEscalationProvider(), failed.getEscalationModel())) {
+            next = new RoutingDecision(failed.getRule(), failed.getEscalationProvider(), failed.getEscalationModel(),
+                    failed.getPromptTokens(), null, null, failed.getRequestedProvider());
+        } else {
+            return null;
+        }
+        
+        Counter.builder("llm.routing.fallbacks")
+                .description("Routed requests retried on another target after an upstream failure")
+                .tag("rule", String.valueOf(rule.getName()))
+                .tag("provider", next.getProvider())
+                .tag("model", String.valueOf(next.getModel()))
+                .register(meterRegistry)
+                .increment();
+        log.debug("Falling back from {}/{} to {}/{}", failed.getProvider(), failed.getModel(), next.getProvider(), next.getModel());
+        return next;
+    }
+    
+    /**
+     * Record a successful exchange. Only configured routing targets are tracked, so client-chosen
+     * model names do not grow the table.
+     */
+    public void recordLatency(String provider, String model, long nanos) {
+        TargetStats stats = stats(provider, model);
+        if (stats == null) {
+            return;
+        }
+        stats.latencyNanos.accumulateAndGet(nanos, (average, sample) -> average == 0 ? sample : average + (sample - average) / 8);
+        stats.failures.set(0);
+    }
+    
+    /**
+     * Record a failed exchange. The target is skipped for a back-off that doubles with each consecutive
+     * failure, up to five minutes, and is then given one request to recover.
+     */
+    public void recordFailure(String provider, String model) {
+        TargetStats stats = stats(provider, model);
+        if (stats == null) {
+            return;
+        }
+        int failures = stats.failures.incrementAndGet();
+        long backoff = Math.min(MAX_FAILURE_BACKOFF_NANOS, FAILURE_BACKOFF_NANOS << Math.min(failures - 1, 16));
+        stats.retryAt = System.nanoTime() + backoff;
+    }
+    
+    public long getAverageLatencyNanos(String provider, String model) {
+        TargetStats stats = targetStats.get(key(provider, model));
+        return stats != null ? stats.latencyNanos.get() : 0L;
+    }
+    
+    boolean isBackingOff(String provider, String model) {
+        TargetStats stats = targetStats.get(key(provider, model));
+        return stats != null && stats.failures.get() > 0 && System.nanoTime() - stats.retryAt < 0;
+    }
+    
+    private boolean matches(LlmProperties.RoutingRule rule, int promptTokens, int completionTokens, String taskHint) {
+        if (rule.getMinPromptTokens() != null && promptTokens < rule.getMinPromptTokens()) {
+            return false;
+        }
+        if (rule.getMaxPromptTokens() != null && promptTokens > rule.getMaxPromptTokens()) {
+            return false;
+        }
+        if (rule.getMaxCompletionTokens() != null && completionTokens > rule.getMaxCompletionTokens()) {
+            return false;
+        }
+        List<String> hints = rule.getTaskHints();
+        return hints == null || hints.isEmpty() || (taskHint != null && hints.contains(taskHint));
+    }
+    
+    private LlmProperties.RoutingTarget selectTarget(List<LlmProperties.RoutingTarget> targets,
+                                                     String provider,
+                                                     Predicate<String> available,
+                                                     RoutingDecision exclude) {
+        LlmProperties.RoutingTarget best = null;
+        long bestLatency = Long.MAX_VALUE;
+        for (LlmProperties.RoutingTarget target : targets) {
+            if (StringUtils.hasText(provider) && !provider.equals(target.getProvider())) {
+                continue;
+            }
+            if (!available.test(target.getProvider()) || isBackingOff(target.getProvider(), target.getModel())) {
+                continue;
+            }
+            if (exclude != null && isSameTarget(exclude, target.getProvider(), target.getModel())) {
+                continue;
+            }
+            // Unmeasured targets report 0 so that each one gets sampled at least once
+            long latency = getAverageLatencyNanos(target.getProvider(), target.getModel());
+            if (latency < bestLatency) {
+                best = target;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+    
+    private TargetStats stats(String provider, String model) {
+        String key = key(provider, model);
+        TargetStats stats = targetStats.get(key);
+        if (stats == null && isTarget(provider, model)) {
+            stats = targetStats.computeIfAbsent(key, k -> new TargetStats());
+        }
+        return stats;
+    }
+    
+    private boolean isTarget(String provider, String model) {
+        LlmProperties.Routing routing = llmProperties.getRouting();
+        if (routing == null || routing.getRules() == null) {
+            return false;
+        }
+        for (LlmProperties.RoutingRule rule : routing.getRules()) {
+            for (LlmProperties.RoutingTarget target : rule.getTargets()) {
+                if (Objects.equals(provider, target.getProvider()) && Objects.equals(model, target.getModel())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private LlmProperties.RoutingRule findRule(String name) {
+        LlmProperties.Routing routing = llmProperties.getRouting();
+        if (routing == null || routing.getRules() == null) {
+            return null;
+        }
+        for (LlmProperties.RoutingRule rule : routing.getRules()) {
+            if (Objects.equals(name, rule.getName())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isSameTarget(RoutingDecision decision, String provider, String model) {
+        return Objects.equals(decision.getProvider(), provider) && Objects.equals(decision.getModel(), model);
+    }
+    
+    private static String key(String provider, String model) {
+        return provider + "/" + model;
+    }
+    
+    private static final class TargetStats {
+        // Exponentially weighted moving average; 0 until the first success
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long retryAt;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks a conversation before it is sent upstream: drops repeated system messages,
+ * strips redundant whitespace and keeps only the most recent turns that fit the token budget.
+ * A turn is a user message with the replies that follow it, and turns are kept or dropped whole,
+ * so the kept history never opens with an orphan assistant reply. System messages and the latest
+ * turn are always kept.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromptCompactor {
+    
+    private static final String SYSTEM_ROLE = "system";
+    private static final String USER_ROLE = "user";
+    private static final Pattern TRAILING_SPACES = Pattern.compile("[ \\t]+(?=\\n|$)");
+    // Runs of spaces and tabs between words; leading indentation is left alone since it can carry meaning in code
+    private static final Pattern INNER_SPACES = Pattern.compile("(?<=\\S)[ \\t]{2,}(?=\\S)");
+    private static final Pattern EXTRA_BLANK_LINES = Pattern.compile("\\n{3,}");
+    
+    private final LlmProperties llmProperties;
+    
+    public boolean isEnabled() {
+        LlmProperties.Compaction settings = llmProperties.getCompaction();
+        return settings != null && Boolean.TRUE.equals(settings.getEnabled());
+    }
+    
+    /**
+     * Compact the messages according to {@code llm.compaction}.
+     *
+     * @param messages the conversation as sent by the client
+     * @return the kept messages, in their original order, and the older turns that were dropped
+     */
+    public Result compact(List<ChatRequest.Message> messages) {
+        LlmProperties.Compaction settings = llmProperties.getCompaction();
+        int tokensBefore = TokenEstimator.estimate(messages);
+        
+        List<ChatRequest.Message> cleaned = new ArrayList<>(messages.size());
+        Set<String> systemPrompts = new HashSet<>();
+        for (ChatRequest.Message message : messages) {
+            String content = Boolean.TRUE.equals(settings.getCollapseWhitespace())
+                    ? collapseWhitespace(message.getContent())
+                    : message.getContent();
+            if (SYSTEM_ROLE.equals(message.getRole())
+                    && Boolean.TRUE.equals(settings.getDedupeSystemMessages())
+                    && !systemPrompts.add(content)) {
+                continue;
+            }
+            cleaned.add(Objects.equals(content, message.getContent()) ? message : copy(message, content));
+        }
+        
+        List<ChatRequest.Message> dropped = new ArrayList<>();
+        boolean[] keep = selectTurns(cleaned, settings);
+        List<ChatRequest.Message> kept = new ArrayList<>(cleaned.size());
+        for (int i = 0; i < cleaned.size(); i++) {
+            if (keep[i]) {
+                kept.add(cleaned.get(i));
+            } else {
+                dropped.add(cleaned.get(i));
+            }
+        }
+        
+        return new Result(kept, dropped, tokensBefore, TokenEstimator.estimate(kept));
+    }
+    
+    /**
+     * Insert a summary of dropped turns after the leading system messages.
+     */
+    public List<ChatRequest.Message> withSummary(List<ChatRequest.Message> kept, String summary) {
+        int index = 0;
+        while (index < kept.size() && SYSTEM_ROLE.equals(kept.get(index).getRole())) {
+            index++;
+        }
+        List<ChatRequest.Message> messages = new ArrayList<>(kept.size() + 1);
+        messages.addAll(kept.subList(0, index));
+        messages.add(ChatRequest.Message.builder()
+                .role(SYSTEM_ROLE)
+                .content("Summary of the earlier conversation: " + summary)
+                .build());
+        messages.addAll(kept.subList(index, kept.size()));
+        return messages;
+    }
+    
+    private boolean[] selectTurns(List<ChatRequest.Message> messages, LlmProperties.Compaction settings) {
+        boolean[] keep = new boolean[messages.size()];
+        int budget = settings.getMaxPromptTokens() != null ? settings.getMaxPromptTokens() : Integer.MAX_VALUE;
+        int turnsLeft = settings.getKeepRecentTurns() != null ? settings.getKeepRecentTurns() : Integer.MAX_VALUE;
+        
+        int used = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (SYSTEM_ROLE.equals(messages.get(i).getRole())) {
+                keep[i] = true;
+                used += TokenEstimator.estimate(messages.get(i));
+            }
+        }
+        
+        // Walk back one turn at a time; the latest turn is kept even if it alone exceeds the budget
+        boolean latest = true;
+        for (int end = messages.size(); end > 0; ) {
+            int start = end - 1;
+            while (start > 0 && !USER_ROLE.equals(messages.get(start).getRole())) {
+                start--;
+            }
+            // Replies before the first user message have no turn to belong to
+            boolean orphan = !USER_ROLE.equals(messages.get(start).getRole());
+            int tokens = 0;
+            for (int i = start; i < end; i++) {
+                if (!keep[i]) {
+                    tokens += TokenEstimator.estimate(messages.get(i));
+                }
+            }
+            if (!latest && (orphan || turnsLeft <= 0 || used + tokens > budget)) {
+                break;
+            }
+            for (int i = start; i < end; i++) {
+                keep[i] = true;
+            }
+            used += tokens;
+            turnsLeft--;
+            latest = false;
+            end = start;
+        }
+        return keep;
+    }
+    
+    static String collapseWhitespace(String content) {
+        if (content == null) {
+            return null;
+        }
+        String collapsed = TRAILING_SPACES.matcher(content).replaceAll("");
+        collapsed = INNER_SPACES.matcher(collapsed).replaceAll(" ");
+        collapsed = EXTRA_BLANK_LINES.matcher(collapsed).replaceAll("\n\n");
+        return collapsed.trim();
+    }
+    
+    private static ChatRequest.Message copy(ChatRequest.Message message, String content) {
+        return ChatRequest.Message.builder()
+                .role(message.getRole())
+                .content(content)
+                .name(message.getName())
+                .build();
+    }
+    
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private List<ChatRequest.Message> messages;
+        private List<ChatRequest.Message> dropped;
+        private int tokensBefore;
+        private int tokensAfter;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.llm.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of {@link ModelRouter#route}: where a request should be sent and,
+ * optionally, which larger model to retry on when the routed answer is truncated or empty.
+ * The provider the caller asked for, if any, is kept so that a fallback honours it.
+ */
+@Data
+@AllArgsConstructor
+public class RoutingDecision {
+    private String rule;
+    private String provider;
+    private String model;
+    private int promptTokens;
+    private String escalationProvider;
+    private String escalationModel;
+    private String requestedProvider;
+    
+    public boolean canEscalate() {
+        return escalationProvider != null;
+    }
+}
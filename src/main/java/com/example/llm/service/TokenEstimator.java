@@ -0,0 +1,45 @@
+package com.example.llm.service;
+
+import com.example.llm.dto.ChatRequest;
+
+import java.util.List;
+
+/**
+ * Cheap token count approximation used for routing and budgeting decisions.
+ * Uses the common ~4 characters per token heuristic plus a small per-message overhead,
+ * which is close enough for English text without pulling in a provider-specific tokenizer.
+ */
+public final class TokenEstimator {
+    
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+    
+    private TokenEstimator() {
+    }
+    
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+    
+    public static int estimate(ChatRequest.Message message) {
+        return TOKENS_PER_MESSAGE + estimate(message.getContent());
+    }
+    
+    public static int estimate(List<ChatRequest.Message> messages) {
+        if (messages == null) {
+            return 0;
+        }
+        int total = 0;
+        for (ChatRequest.Message message : messages) {
+            total += estimate(message);
+        }
+        return total;
+    }
+    
+    public static int charsFor(int tokens) {
+        return tokens * CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.llm.usage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint ({@code llmquotas}) for changing token quotas at runtime. Kept off the public
+ * API so that callers cannot raise or remove their own quota, and exposed over JMX only by default;
+ * the read-only view stays under {@code /api/v1/llm/usage/quotas/{user}}.
+ */
+@Component
+@Endpoint(id = "llmquotas")
+@RequiredArgsConstructor
+public class LlmQuotasEndpoint {
+    
+    private final UsageLedger usageLedger;
+    
+    @ReadOperation
+    public QuotaStatus quota(@Selector String user) {
+        return usageLedger.getQuota(user);
+    }
+    
+    @WriteOperation
+    public QuotaStatus setQuota(@Selector String user, long tokens) {
+        return usageLedger.setQuota(user, tokens);
+    }
+    
+    /**
+     * Remove the user's own quota, so the default quota applies again.
+     */
+    @DeleteOperation
+    public QuotaStatus clearQuota(@Selector String user) {
+        return usageLedger.setQuota(user, null);
+    }
+}
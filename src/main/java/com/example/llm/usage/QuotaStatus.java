@@ -0,0 +1,16 @@
+package com.example.llm.usage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class QuotaStatus {
+    private String user;
+    private Long limit;
+    private long used;
+    private Long remaining;
+    private long windowStart;
+    private long windowEnd;
+    private boolean exceeded;
+}
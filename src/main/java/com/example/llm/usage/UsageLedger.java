@@ -0,0 +1,513 @@
+package com.example.llm.usage;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.journal.AsyncNdjsonWriter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process token accounting per (user, provider, model, time bucket). The user is the
+ * client-supplied {@code user} field and is trusted as given; at most {@code max-users} distinct
+ * users are tracked at a time and any further ones share the {@link #OTHER_USERS} account and its
+ * quota, so made-up names cannot grow the ledger without bound. Counters are
+ * {@link LongAdder}s, so concurrent requests for the same key do not contend; a background task
+ * appends snapshots of the buckets that changed to gzip NDJSON files, evicts old buckets and deletes
+ * files that only hold evicted ones. At startup the retained buckets are rewritten into a single
+ * compacted file. Quota checks read a per-user running total for the current quota window.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UsageLedger {
+    
+    public static final String ANONYMOUS = "anonymous";
+    public static final String OTHER_USERS = "other";
+    
+    private static final String FILE_PREFIX = "usage";
+    private static final String FILE_GLOB = FILE_PREFIX + "-*.ndjson.gz";
+    private static final int WRITER_BUFFER_SIZE = 65536;
+    
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<String, QuotaWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, Long> quotas = new ConcurrentHashMap<>();
+    private final Set<String> users = ConcurrentHashMap.newKeySet();
+    private volatile LlmProperties.Usage settings;
+    private Path directory;
+    private AsyncNdjsonWriter writer;
+    private Scheduler scheduler;
+    private Disposable schedule;
+    
+    @PostConstruct
+    public void start() {
+        LlmProperties.Usage usage = llmProperties.getUsage();
+        if (usage == null || !Boolean.TRUE.equals(usage.getEnabled())) {
+            return;
+        }
+        
+        quotas.putAll(usage.getTokenQuotas());
+        directory = Paths.get(usage.getDirectory());
+        restore(usage);
+        writer = new AsyncNdjsonWriter(directory, FILE_PREFIX, WRITER_BUFFER_SIZE,
+                usage.getMaxFileSizeMb() * 1024L * 1024L, objectMapper);
+        scheduler = Schedulers.newSingle("llm-usage-flush", true);
+        schedule = scheduler.schedulePeriodically(this::flush,
+                usage.getFlushIntervalMs(), usage.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        settings = usage;
+        log.info("Usage ledger enabled in '{}' ({} ms buckets)", usage.getDirectory(), usage.getBucketMs());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (settings == null) {
+            return;
+        }
+        schedule.dispose();
+        scheduler.dispose();
+        flush();
+        writer.close();
+        settings = null;
+    }
+    
+    public boolean isEnabled() {
+        return settings != null;
+    }
+    
+    /**
+     * Add one exchange to the ledger. Lock-free unless this is the first use of a key.
+     */
+    public void record(String user, String provider, String model, long promptTokens, long completionTokens) {
+        LlmProperties.Usage current = settings;
+        if (current == null) {
+            return;
+        }
+        
+        String owner = track(userOf(user), current);
+        long now = System.currentTimeMillis();
+        Key key = new Key(owner, provider, String.valueOf(model), now - now % current.getBucketMs());
+        // get() first: computeIfAbsent locks the bin even when the key is present
+        Counters bucket = counters.get(key);
+        if (bucket == null) {
+            bucket = counters.computeIfAbsent(key, k -> new Counters());
+        }
+        bucket.requests.increment();
+        bucket.promptTokens.add(promptTokens);
+        bucket.completionTokens.add(completionTokens);
+        if (!bucket.dirty) {
+            bucket.dirty = true;
+        }
+        
+        window(owner, now, current).tokens.add(promptTokens + completionTokens);
+    }
+    
+    /**
+     * Whether the user has used up their token quota for the current window. A map lookup and a
+     * counter read; always false when the ledger is disabled or the user has no quota.
+     */
+    public boolean isOverQuota(String user) {
+        LlmProperties.Usage current = settings;
+        if (current == null) {
+            return false;
+        }
+        String owner = accountOf(userOf(user), current);
+        Long limit = quotaFor(owner, current);
+        if (limit == null) {
+            return false;
+        }
+        QuotaWindow window = windows.get(owner);
+        long now = System.currentTimeMillis();
+        return window != null && window.start == windowStart(now, current) && window.tokens.sum() >= limit;
+    }
+    
+    public void rejected(String user) {
+        Counter.builder("llm.usage.quota.rejections")
+                .description("Requests rejected because the user exceeded their token quota")
+                .register(meterRegistry)
+                .increment();
+        log.debug("Token quota exceeded for user '{}'", userOf(user));
+    }
+    
+    public QuotaStatus getQuota(String user) {
+        LlmProperties.Usage current = settings != null ? settings : llmProperties.getUsage();
+        String owner = accountOf(userOf(user), current);
+        long now = System.currentTimeMillis();
+        long start = windowStart(now, current);
+        QuotaWindow window = windows.get(owner);
+        long used = window != null && window.start == start ? window.tokens.sum() : 0L;
+        Long limit = quotaFor(owner, current);
+        return new QuotaStatus(
+                owner,
+                limit,
+                used,
+                limit != null ? Math.max(0, limit - used) : null,
+                start,
+                start + current.getQuotaWindowMs(),
+                limit != null && used >= limit
+        );
+    }
+    
+    /**
+     * Set or clear (with null) a user's token quota at runtime.
+     */
+    public QuotaStatus setQuota(String user, Long tokens) {
+        if (tokens == null) {
+            quotas.remove(userOf(user));
+        } else if (tokens < 0) {
+            throw new IllegalArgumentException("Quota must not be negative");
+        } else {
+            quotas.put(userOf(user), tokens);
+        }
+        return getQuota(user);
+    }
+    
+    /**
+     * Retained buckets matching the filters, oldest first. Null filters match everything.
+     */
+    public List<UsageRecord> query(String user, String provider, String model, Long from, Long to) {
+        List<UsageRecord> records = new ArrayList<>();
+        counters.forEach((key, bucket) -> {
+            if ((user != null && !user.equals(key.user))
+                    || (provider != null && !provider.equals(key.provider))
+                    || (model != null && !model.equals(key.model))
+                    || (from != null && key.bucketStart < from)
+                    || (to != null && key.bucketStart >= to)) {
+                return;
+            }
+            records.add(bucket.snapshot(key));
+        });
+        records.sort(Comparator.comparingLong(UsageRecord::getBucketStart)
+                .thenComparing(UsageRecord::getUser)
+                .thenComparing(UsageRecord::getProvider)
+                .thenComparing(UsageRecord::getModel));
+        return records;
+    }
+    
+    /**
+     * Append a snapshot of every bucket that changed since the last flush, then evict expired buckets.
+     */
+    void flush() {
+        LlmProperties.Usage current = settings;
+        if (current == null) {
+            return;
+        }
+        
+        int written = 0;
+        for (Map.Entry<Key, Counters> entry : counters.entrySet()) {
+            Counters bucket = entry.getValue();
+            if (!bucket.dirty) {
+                continue;
+            }
+            // Clear first so that updates racing with the snapshot mark the bucket again
+            bucket.dirty = false;
+            if (writer.offer(bucket.snapshot(entry.getKey()))) {
+                written++;
+            } else {
+                bucket.dirty = true;
+            }
+        }
+        
+        long now = System.currentTimeMillis();
+        long oldest = now - now % current.getBucketMs() - current.getRetainBuckets() * current.getBucketMs();
+        counters.entrySet().removeIf(entry -> entry.getKey().bucketStart < oldest && !entry.getValue().dirty);
+        long windowStart = windowStart(now, current);
+        windows.values().removeIf(window -> window.start < windowStart);
+        Set<String> retained = new HashSet<>(windows.keySet());
+        counters.keySet().forEach(key -> retained.add(key.user));
+        users.retainAll(retained);
+        prune(oldest);
+        log.debug("Flushed {} usage buckets", written);
+    }
+    
+    /**
+     * Delete files last written before the oldest retained bucket started. A snapshot is written
+     * after its bucket starts, so such a file holds nothing that would still be restored.
+     */
+    private void prune(long oldest) {
+        Path current = writer.getCurrentFile();
+        for (Path file : listFiles()) {
+            if (!file.equals(current) && lastModified(file) < oldest) {
+                delete(file);
+            }
+        }
+    }
+    
+    static String userOf(String user) {
+        return StringUtils.hasText(user) ? user : ANONYMOUS;
+    }
+    
+    /**
+     * The account a user's usage is recorded under, starting to track the user if there is room.
+     * The size check and the insert race, so the limit may be overshot by a few concurrent users.
+     */
+    private String track(String user, LlmProperties.Usage current) {
+        if (users.contains(user)) {
+            return user;
+        }
+        if (users.size() >= current.getMaxUsers()) {
+            return OTHER_USERS;
+        }
+        users.add(user);
+        return user;
+    }
+    
+    private String accountOf(String user, LlmProperties.Usage current) {
+        return users.contains(user) || users.size() < current.getMaxUsers() ? user : OTHER_USERS;
+    }
+    
+    private Long quotaFor(String user, LlmProperties.Usage current) {
+        Long limit = quotas.get(user);
+        return limit != null ? limit : current.getDefaultTokenQuota();
+    }
+    
+    private QuotaWindow window(String user, long now, LlmProperties.Usage current) {
+        long start = windowStart(now, current);
+        QuotaWindow window = windows.get(user);
+        if (window != null && window.start == start) {
+            return window;
+        }
+        return windows.compute(user, (k, existing) -> existing != null && existing.start == start
+                ? existing : new QuotaWindow(start));
+    }
+    
+    private static long windowStart(long now, LlmProperties.Usage current) {
+        return now - now % current.getQuotaWindowMs();
+    }
+    
+    /**
+     * Rebuild retained buckets and current quota windows from earlier snapshot files, so that
+     * a restart neither loses recent usage nor resets quotas. Expired files are deleted unread and
+     * the rest are replaced by one compacted file, so startup does not get slower with uptime.
+     */
+    private void restore(LlmProperties.Usage usage) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long oldest = now - now % usage.getBucketMs() - usage.getRetainBuckets() * usage.getBucketMs();
+        List<Path> files = new ArrayList<>();
+        for (Path file : listFiles()) {
+            if (lastModified(file) < oldest) {
+                delete(file);
+            } else {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparing(this::lastModified).thenComparing(Path::toString));
+        
+        ObjectReader reader = objectMapper.readerFor(UsageRecord.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        for (Path file : files) {
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    UsageRecord record = reader.readValue(line);
+                    if (record.getBucketStart() >= oldest) {
+                        Key key = new Key(record.getUser(), record.getProvider(), record.getModel(), record.getBucketStart());
+                        counters.put(key, Counters.of(record));
+                    }
+                }
+            } catch (IOException e) {
+                // The last file of a crashed process may end mid-stream; keep what was read
+                log.debug("Stopped reading {}: {}", file, e.getMessage());
+            }
+        }
+        
+        long windowStart = windowStart(now, usage);
+        counters.forEach((key, bucket) -> {
+            users.add(key.user);
+            if (key.bucketStart >= windowStart) {
+                windows.computeIfAbsent(key.user, k -> new QuotaWindow(windowStart)).tokens
+                        .add(bucket.promptTokens.sum() + bucket.completionTokens.sum());
+            }
+        });
+        if (!counters.isEmpty()) {
+            log.info("Restored {} usage buckets from {}", counters.size(), directory);
+        }
+        compact(files);
+    }
+    
+    /**
+     * Replace the restored files by one file holding the latest snapshot of every retained bucket.
+     * The new file is written under a temporary name and moved into place before anything is
+     * deleted, so a crash part-way leaves either the old files or the compacted one.
+     */
+    private void compact(List<Path> restored) {
+        if (restored.isEmpty()) {
+            return;
+        }
+        Path compacted = directory.resolve(FILE_PREFIX + "-"
+                + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-compacted.ndjson.gz");
+        if (!counters.isEmpty()) {
+            Path temp = directory.resolve(compacted.getFileName() + ".tmp");
+            ObjectWriter lineWriter = objectMapper.writer();
+            try {
+                try (OutputStream out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp)))) {
+                    for (Map.Entry<Key, Counters> entry : counters.entrySet()) {
+                        out.write(lineWriter.writeValueAsBytes(entry.getValue().snapshot(entry.getKey())));
+                        out.write('\n');
+                    }
+                }
+                Files.move(temp, compacted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // Keep the replaced files' place in restore order: files written from now on are newer
+                long newest = restored.stream().mapToLong(this::lastModified).max().orElse(0L);
+                Files.setLastModifiedTime(compacted, FileTime.fromMillis(newest));
+            } catch (IOException e) {
+                log.warn("Cannot compact usage files in {}: {}", directory, e.getMessage());
+                delete(temp);
+                return;
+            }
+        }
+        for (Path file : restored) {
+            if (!file.equals(compacted)) {
+                delete(file);
+            }
+        }
+        log.debug("Compacted {} usage files into {}", restored.size(), compacted);
+    }
+    
+    private List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Cannot list usage files in {}: {}", directory, e.getMessage());
+        }
+        return files;
+    }
+    
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete usage file {}: {}", file, e.getMessage());
+        }
+    }
+    
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+    
+    private static final class Key {
+        private final String user;
+        private final String provider;
+        private final String model;
+        private final long bucketStart;
+        private final int hash;
+        
+        Key(String user, String provider, String model, long bucketStart) {
+            this.user = user;
+            this.provider = provider;
+            this.model = model;
+            this.bucketStart = bucketStart;
+            // Computed by hand; Objects.hash would box and allocate a varargs array on every record
+            int h = user.hashCode();
+            h = 31 * h + (provider != null ? provider.hashCode() : 0);
+            h = 31 * h + model.hashCode();
+            this.hash = 31 * h + Long.hashCode(bucketStart);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return bucketStart == other.bucketStart
+                    && user.equals(other.user)
+                    && Objects.equals(provider, other.provider)
+                    && model.equals(other.model);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    private static final class Counters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private volatile boolean dirty;
+        
+        static Counters of(UsageRecord record) {
+            Counters counters = new Counters();
+            counters.requests.add(record.getRequests());
+            counters.promptTokens.add(record.getPromptTokens());
+            counters.completionTokens.add(record.getCompletionTokens());
+            return counters;
+        }
+        
+        UsageRecord snapshot(Key key) {
+            return UsageRecord.builder()
+                    .user(key.user)
+                    .provider(key.provider)
+                    .model(key.model)
+                    .bucketStart(key.bucketStart)
+                    .requests(requests.sum())
+                    .promptTokens(promptTokens.sum())
+                    .completionTokens(completionTokens.sum())
+                    .build();
+        }
+    }
+    
+    private static final class QuotaWindow {
+        private final long start;
+        private final LongAdder tokens = new LongAdder();
+        
+        QuotaWindow(long start) {
+            this.start = start;
+        }
+    }
+}
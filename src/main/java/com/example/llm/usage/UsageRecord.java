@@ -0,0 +1,35 @@
+package com.example.llm.usage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totals for one (user, provider, model, bucket). Flushed snapshots are cumulative, so the last
+ * record written for a key holds its final values.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageRecord {
+    
+    private String user;
+    
+    private String provider;
+    
+    private String model;
+    
+    private long bucketStart;
+    
+    private long requests;
+    
+    private long promptTokens;
+    
+    private long completionTokens;
+    
+    public long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.llm.warmup;
+
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSettings;
+import com.example.llm.config.ProviderSnapshot;
+import com.example.llm.health.ProviderHealthMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the models of self-hosted providers loaded. Servers such as Ollama unload a model after a few
+ * idle minutes and the next request pays the load time. For providers with {@code warmup.enabled} the
+ * warmer preloads the listed models at startup, sends a 1-token completion to models in recent use
+ * before the server would unload them, and warms models ahead of the hours in which they are usually
+ * requested. Cold loads and the load time avoided are exported as metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModelWarmer {
+    
+    static final String REASON_PRELOAD = "preload";
+    static final String REASON_KEEPALIVE = "keepalive";
+    static final String REASON_PREDICTED = "predicted";
+    
+    private static final long TICK_MS = 5000;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int HOURS_PER_DAY = 24;
+    /** Models tracked per provider; clients choose model names, so the least recently active are forgotten. */
+    private static final int MAX_TRACKED_MODELS = 64;
+    /** Weight of the previous days when an hour's request count is folded into its hour-of-day average. */
+    private static final double DAILY_DECAY = 0.5;
+    /** Weight of the previous estimate in the latency moving averages. */
+    private static final double LATENCY_DECAY = 0.7;
+    
+    private final ProviderRegistry providerRegistry;
+    private final ProviderHealthMonitor healthMonitor;
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<String, Map<String, ModelState>> models = new ConcurrentHashMap<>();
+    private LongSupplier clock = System::currentTimeMillis;
+    private Scheduler scheduler;
+    private Disposable schedule;
+    
+    @PostConstruct
+    public void start() {
+        preload();
+        // Providers may enable warm-up through a reload, so the tick runs regardless and is cheap when idle
+        scheduler = Schedulers.newSingle("llm-model-warmer", true);
+        schedule = scheduler.schedulePeriodically(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                log.warn("Model warm-up round failed: {}", e.getMessage());
+            }
+        }, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+    
+    /**
+     * Record a completed chat request so that its model is kept warm, and account for whether it hit
+     * a cold model. Called for successful upstream exchanges only.
+     *
+     * @param provider the provider that served the request
+     * @param model the model that served the request
+     * @param nanos the upstream latency
+     */
+    public void recordRequest(String provider, String model, long nanos) {
+        ProviderSettings settings = providerRegistry.current().getProvider(provider);
+        if (settings == null || !settings.isWarmupEnabled() || model == null) {
+            return;
+        }
+        ProviderSettings.Warmup policy = settings.getWarmup();
+        long now = clock.getAsLong();
+        long startedAt = now - TimeUnit.NANOSECONDS.toMillis(nanos);
+        ModelState state = state(provider, model);
+        synchronized (state) {
+            if (state.isCold(startedAt, policy.getUnloadAfterMs())) {
+                recordColdLoad(state, "request", nanos, state.warmRequestNanos);
+            } else {
+                state.warmRequestNanos = average(state.warmRequestNanos, nanos);
+                // Without warm-up requests the server would have unloaded the model since its last use
+                boolean avoided = state.lastRequest == 0 || startedAt - state.lastRequest > policy.getUnloadAfterMs();
+                if (avoided && state.loadNanos > 0) {
+                    meterRegistry.counter("llm.warmup.time.saved", "provider", provider, "model", state.tag)
+                            .increment(TimeUnit.NANOSECONDS.toMillis(state.loadNanos));
+                }
+            }
+            state.lastRequest = now;
+            state.lastActivity = now;
+            state.keepWarmUntil = Math.max(state.keepWarmUntil, now + policy.getIdleAfterMs());
+            state.roll(now);
+            state.requestsThisHour++;
+        }
+    }
+    
+    /**
+     * Send a warm-up request for every model listed in {@code preload-models}.
+     */
+    void preload() {
+        long now = clock.getAsLong();
+        for (ProviderSettings provider : providerRegistry.current().getProviders().values()) {
+            if (!provider.isWarmupEnabled() || provider.getWarmup().getPreloadModels().isEmpty()) {
+                continue;
+            }
+            for (String model : provider.getWarmup().getPreloadModels()) {
+                ModelState state = state(provider.getName(), model);
+                synchronized (state) {
+                    state.keepWarmUntil = Math.max(state.keepWarmUntil, now + provider.getWarmup().getIdleAfterMs());
+                }
+                warm(provider, state, REASON_PRELOAD);
+            }
+            log.info("Preloading models {} of provider '{}'", provider.getWarmup().getPreloadModels(), provider.getName());
+        }
+    }
+    
+    /**
+     * Choose the models to keep warm on each provider and send keep-alives to those that have been
+     * idle for {@code keep-alive-interval-ms}. A model is kept warm while it was used within
+     * {@code idle-after-ms}, or while its hour-of-day usually sees {@code predict-min-requests}; the
+     * next hour's models are warmed {@code predict-lead-ms} ahead. At most {@code max-warm-models}
+     * per provider are kept, those wanted for longest first.
+     */
+    void tick() {
+        long now = clock.getAsLong();
+        ProviderSnapshot snapshot = providerRegistry.current();
+        
+        // Forget providers that were removed or no longer warmed after a reload
+        models.keySet().removeIf(name -> {
+            ProviderSettings provider = snapshot.getProvider(name);
+            return provider == null || !provider.isWarmupEnabled();
+        });
+        
+        for (Map.Entry<String, Map<String, ModelState>> entry : models.entrySet()) {
+            ProviderSettings provider = snapshot.getProvider(entry.getKey());
+            if (!healthMonitor.isHealthy(provider.getName())) {
+                continue;
+            }
+            ProviderSettings.Warmup policy = provider.getWarmup();
+            
+            Map<ModelState, Long> wanted = new HashMap<>();
+            for (ModelState state : entry.getValue().values()) {
+                long until = wantedUntil(state, now, policy);
+                if (until > now) {
+                    wanted.put(state, until);
+                }
+            }
+            List<ModelState> ranked = new ArrayList<>(wanted.keySet());
+            ranked.sort(Comparator.comparing(wanted::get, Comparator.reverseOrder()));
+            
+            for (ModelState state : ranked.subList(0, Math.min(ranked.size(), policy.getMaxWarmModels()))) {
+                String reason;
+                synchronized (state) {
+                    if (now - state.lastActivity < policy.getKeepAliveIntervalMs()) {
+                        continue;
+                    }
+                    reason = state.keepWarmUntil > now ? REASON_KEEPALIVE : REASON_PREDICTED;
+                }
+                warm(provider, state, reason);
+            }
+        }
+    }
+    
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    /**
+     * Whether a warm-up request for the model is in flight.
+     */
+    boolean isWarming(String provider, String model) {
+        Map<String, ModelState> states = models.get(provider);
+        ModelState state = states != null ? states.get(model) : null;
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            return state.warming;
+        }
+    }
+    
+    private long wantedUntil(ModelState state, long now, ProviderSettings.Warmup policy) {
+        synchronized (state) {
+            state.roll(now);
+            long hour = now / HOUR_MS;
+            long until = state.keepWarmUntil;
+            if (state.expected(hour) >= policy.getPredictMinRequests()) {
+                until = Math.max(until, (hour + 1) * HOUR_MS);
+            }
+            long nextHour = (hour + 1) * HOUR_MS;
+            if (nextHour - now <= policy.getPredictLeadMs() && state.expected(hour + 1) >= policy.getPredictMinRequests()) {
+                until = Math.max(until, nextHour + HOUR_MS);
+            }
+            return until;
+        }
+    }
+    
+    private void warm(ProviderSettings provider, ModelState state, String reason) {
+        synchronized (state) {
+            if (state.warming) {
+                return;
+            }
+            state.warming = true;
+        }
+        meterRegistry.counter("llm.warmup.requests",
+                "provider", state.provider,
+                "model", state.tag,
+                "reason", reason)
+                .increment();
+        
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", "ping");
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", state.model);
+        body.put("max_tokens", 1);
+        body.put("messages", Collections.singletonList(message));
+        
+        long startedAt = clock.getAsLong();
+        long start = System.nanoTime();
+        webClient.post()
+                .uri(provider.getChatCompletionsUrl())
+                .headers(provider::applyHeaders)
+                .bodyValue(body)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(provider.getTimeout())
+                .doFinally(signal -> {
+                    synchronized (state) {
+                        state.warming = false;
+                    }
+                })
+                .subscribe(
+                        response -> {
+                            long nanos = System.nanoTime() - start;
+                            synchronized (state) {
+                                if (state.isCold(startedAt, provider.getWarmup().getUnloadAfterMs())) {
+                                    recordColdLoad(state, "warmup", nanos, state.warmProbeNanos);
+                                } else {
+                                    state.warmProbeNanos = average(state.warmProbeNanos, nanos);
+                                }
+                                state.lastActivity = clock.getAsLong();
+                            }
+                        },
+                        ex -> log.debug("Warm-up of model '{}' on provider '{}' failed: {}",
+                                state.model, state.provider, ex.getMessage()));
+    }
+    
+    /**
+     * Count a request that found its model unloaded. The load time is estimated as its latency minus
+     * the usual latency of the same kind of request on a loaded model.
+     */
+    private void recordColdLoad(ModelState state, String source, long nanos, long warmNanos) {
+        meterRegistry.counter("llm.warmup.cold.loads",
+                "provider", state.provider,
+                "model", state.tag,
+                "source", source)
+                .increment();
+        meterRegistry.timer("llm.warmup.cold.load.time",
+                "provider", state.provider,
+                "model", state.tag,
+                "source", source)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        state.loadNanos = average(state.loadNanos, Math.max(0, nanos - warmNanos));
+    }
+    
+    private ModelState state(String provider, String model) {
+        Map<String, ModelState> states = models.computeIfAbsent(provider, name -> new ConcurrentHashMap<>());
+        ModelState state = states.get(model);
+        if (state != null) {
+            return state;
+        }
+        if (states.size() >= MAX_TRACKED_MODELS) {
+            states.values().stream()
+                    .min(Comparator.comparingLong(candidate -> candidate.lastActivity))
+                    .ifPresent(stalest -> states.remove(stalest.model, stalest));
+        }
+        String tag = providerRegistry.current().modelTag(provider, model);
+        return states.computeIfAbsent(model, name -> new ModelState(provider, model, tag));
+    }
+    
+    private static long average(long previous, long sample) {
+        return previous == 0 ? sample : (long) (LATENCY_DECAY * previous + (1 - LATENCY_DECAY) * sample);
+    }
+    
+    /**
+     * What is known about one model of one provider. Guarded by its own monitor.
+     */
+    private static final class ModelState {
+        private final String provider;
+        private final String model;
+        /** Metric tag for the model, {@code other} unless the configuration names it. */
+        private final String tag;
+        /** Last time any request, warm-up or not, completed on the model; 0 if none since startup. */
+        private long lastActivity;
+        private long lastRequest;
+        private long keepWarmUntil;
+        private boolean warming;
+        private long loadNanos;
+        private long warmRequestNanos;
+        private long warmProbeNanos;
+        /** Requests per hour of day (UTC), averaged over days. */
+        private final double[] hourly = new double[HOURS_PER_DAY];
+        private long hour = -1;
+        private int requestsThisHour;
+        
+        ModelState(String provider, String model, String tag) {
+            this.provider = provider;
+            this.model = model;
+            this.tag = tag;
+        }
+        
+        /**
+         * Whether the server has presumably unloaded the model by {@code time}. A model not used since
+         * startup counts as unloaded.
+         */
+        boolean isCold(long time, long unloadAfterMs) {
+            return lastActivity == 0 || time - lastActivity > unloadAfterMs;
+        }
+        
+        double expected(long hourIndex) {
+            return hourly[(int) (hourIndex % HOURS_PER_DAY)];
+        }
+        
+        /**
+         * Fold the counts of completed hours into their hour-of-day averages; hours without requests decay.
+         */
+        void roll(long now) {
+            long current = now / HOUR_MS;
+            if (hour < 0) {
+                hour = current;
+                return;
+            }
+            if (current <= hour) {
+                return;
+            }
+            int slot = (int) (hour % HOURS_PER_DAY);
+            hourly[slot] = DAILY_DECAY * hourly[slot] + (1 - DAILY_DECAY) * requestsThisHour;
+            for (long skipped = hour + 1; skipped < current && skipped <= hour + HOURS_PER_DAY; skipped++) {
+                hourly[(int) (skipped % HOURS_PER_DAY)] *= DAILY_DECAY;
+            }
+            requestsThisHour = 0;
+            hour = current;
+        }
+    }
+}
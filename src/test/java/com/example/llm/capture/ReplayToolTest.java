@@ -0,0 +1,119 @@
+package com.example.llm.capture;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayToolTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldCaptureShapeAndUpstreamTimingWithoutContent() throws Exception {
+        LlmProperties properties = new LlmProperties();
+        properties.getCapture().setEnabled(true);
+        properties.getCapture().setDirectory(directory.toString());
+        TrafficCapture capture = new TrafficCapture(properties, objectMapper, new SimpleMeterRegistry());
+        capture.start();
+
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(
+                        ChatRequest.Message.builder().role("system").content("Be brief").build(),
+                        ChatRequest.Message.builder().role("user").content("My password is hunter2").build()))
+                .maxTokens(64)
+                .build();
+        ChatResponse response = ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content("Noted.").build())
+                        .finishReason("stop")
+                        .build()))
+                .build();
+        Mono<ChatResponse> upstream = Mono.deferContextual(context -> {
+            capture.recordUpstream(context, "openai", request, response, null, 42_000_000L);
+            return Mono.just(response);
+        });
+
+        capture.capture(request, "openai", "chat", upstream).block();
+        capture.stop();
+
+        List<CaptureRecord> records = ReplayTool.readCapture(directory, objectMapper);
+        assertThat(records).hasSize(1);
+        CaptureRecord record = records.get(0);
+        assertThat(record.getRoles()).containsExactly("system", "user");
+        assertThat(record.getContentLengths()).containsExactly(8, 22);
+        assertThat(record.getTaskHint()).isEqualTo("chat");
+        assertThat(record.getOutcome()).isEqualTo("success");
+        assertThat(record.getUpstream()).hasSize(1);
+        assertThat(record.getUpstream().get(0).getLatencyMicros()).isEqualTo(42_000L);
+        assertThat(record.getUpstream().get(0).getResponseChars()).isEqualTo(6);
+        assertThat(objectMapper.writeValueAsString(record)).doesNotContain("hunter2");
+    }
+
+    @Test
+    void stubShouldReproduceRecordedLatencyAndPayloadSize() throws Exception {
+        CaptureRecord record = new CaptureRecord();
+        record.setId(7);
+        record.setRoles(Collections.singletonList("user"));
+        record.setContentLengths(Collections.singletonList(120));
+        record.getUpstream().add(CaptureRecord.UpstreamCall.builder()
+                .status(200)
+                .latencyMicros(150_000L)
+                .responseChars(300)
+                .completionTokens(75)
+                .finishReason("length")
+                .build());
+
+        try (StubProvider stub = new StubProvider(0, Collections.singletonList(record), objectMapper)) {
+            ChatRequest replayed = ReplayTool.toRequest(record);
+            assertThat(replayed.getMessages().get(0).getContent()).hasSize(120);
+            assertThat(replayed.getUser()).isEqualTo("replay-7");
+
+            long start = System.nanoTime();
+            ChatResponse response = WebClient.create("http://localhost:" + stub.getPort())
+                    .post()
+                    .uri("/chat/completions")
+                    .bodyValue(replayed)
+                    .retrieve()
+                    .bodyToMono(ChatResponse.class)
+                    .block(Duration.ofSeconds(5));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(elapsedMillis).isGreaterThanOrEqualTo(150L);
+            assertThat(response.getChoices().get(0).getMessage().getContent()).hasSize(300);
+            assertThat(response.getChoices().get(0).getFinishReason()).isEqualTo("length");
+            assertThat(response.getUsage().getCompletionTokens()).isEqualTo(75);
+        }
+    }
+
+    @Test
+    void reportShouldComputePercentilesAndThroughput() {
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (i + 1) * 1000L;
+        }
+
+        ReplayReport report = ReplayReport.of("baseline", 1.0, latencies, 2, 2000);
+
+        assertThat(report.getP50Millis()).isEqualTo(50.0);
+        assertThat(report.getP99Millis()).isEqualTo(99.0);
+        assertThat(report.getMaxMillis()).isEqualTo(100.0);
+        assertThat(report.getThroughputPerSecond()).isEqualTo(50.0);
+    }
+}
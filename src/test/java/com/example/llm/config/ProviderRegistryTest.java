@@ -0,0 +1,142 @@
+package com.example.llm.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProviderRegistryTest {
+
+    @TempDir
+    Path tempDir;
+    
+    private Path configFile;
+    private ProviderRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        LlmProperties.ProviderConfig openai = new LlmProperties.ProviderConfig();
+        openai.setEnabled(true);
+        openai.setBaseUrl("https://api.openai.com/v1/");
+        openai.setApiKey("initial-key");
+        openai.setDefaultModel("gpt-3.5-turbo");
+        
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", openai);
+        
+        LlmProperties properties = new LlmProperties();
+        properties.setProviders(providers);
+        properties.setDefaultProvider("openai");
+        configFile = tempDir.resolve("llm-providers.yml");
+        properties.getReload().setFile(configFile.toString());
+        properties.getReload().setWatch(false);
+        
+        registry = new ProviderRegistry(properties, new StandardEnvironment());
+        registry.start();
+    }
+
+    @Test
+    void shouldPublishInitialSnapshot() {
+        ProviderSnapshot snapshot = registry.current();
+        
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(snapshot.isAvailable("openai")).isTrue();
+        assertThat(snapshot.getEnabledProviders()).containsExactly("openai");
+        
+        ProviderSettings openai = snapshot.getProvider("openai");
+        assertThat(openai.getChatCompletionsUrl()).isEqualTo("https://api.openai.com/v1/chat/completions");
+        assertThat(openai.getHeaders()).containsEntry("Authorization", "Bearer initial-key");
+    }
+
+    @Test
+    void shouldTagOnlyConfiguredModelsByName() {
+        ProviderSnapshot snapshot = registry.current();
+        
+        assertThat(snapshot.modelTag("openai", "gpt-3.5-turbo")).isEqualTo("gpt-3.5-turbo");
+        assertThat(snapshot.modelTag("openai", "made-up-model-1234")).isEqualTo(ProviderSnapshot.OTHER_MODEL);
+        assertThat(snapshot.modelTag("unknown", "gpt-3.5-turbo")).isEqualTo(ProviderSnapshot.OTHER_MODEL);
+        assertThat(snapshot.modelTag("openai", null)).isEqualTo(ProviderSnapshot.OTHER_MODEL);
+    }
+
+    @Test
+    void shouldSwapSnapshotOnReloadWithoutTouchingTheOldOne() throws IOException {
+        ProviderSnapshot before = registry.current();
+        write("llm:\n"
+                + "  providers:\n"
+                + "    openai:\n"
+                + "      default-model: gpt-4o-mini\n"
+                + "      timeout: 5000\n"
+                + "    ollama:\n"
+                + "      enabled: true\n"
+                + "      base-url: http://localhost:11434/v1\n"
+                + "      api-key: ollama\n");
+        
+        ProviderSnapshot after = registry.reload();
+        
+        assertThat(after.getVersion()).isEqualTo(2);
+        assertThat(registry.current()).isSameAs(after);
+        assertThat(after.getProvider("openai").getDefaultModel()).isEqualTo("gpt-4o-mini");
+        assertThat(after.getProvider("openai").getTimeout().toMillis()).isEqualTo(5000);
+        assertThat(after.isAvailable("ollama")).isTrue();
+        
+        assertThat(before.getProvider("openai").getDefaultModel()).isEqualTo("gpt-3.5-turbo");
+        assertThat(before.getProvider("ollama")).isNull();
+    }
+
+    @Test
+    void shouldKeepCurrentSnapshotWhenReloadIsInvalid() throws IOException {
+        ProviderSnapshot before = registry.current();
+        write("llm:\n"
+                + "  providers:\n"
+                + "    openai:\n"
+                + "      timeout: -1\n");
+        
+        assertThatThrownBy(() -> registry.reload())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("timeout");
+        assertThat(registry.current()).isSameAs(before);
+    }
+
+    @Test
+    void shouldRejectBaseUrlThatIsNotHttp() throws IOException {
+        write("llm:\n"
+                + "  providers:\n"
+                + "    openai:\n"
+                + "      base-url: ftp://api.openai.com/v1\n");
+        
+        assertThatThrownBy(() -> registry.reload())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Provider 'openai' base-url must be http(s)")
+                .hasNoCause();
+    }
+
+    @Test
+    void shouldDrainRetiredSnapshotWhenLastRequestCompletes() throws IOException {
+        ProviderSnapshot before = registry.current();
+        before.acquire();
+        write("llm:\n"
+                + "  default-provider: openai\n");
+        registry.reload();
+        
+        assertThat(registry.getRetired()).containsExactly(before);
+        
+        registry.release(before);
+        
+        assertThat(registry.getRetired()).isEmpty();
+        assertThat(before.getInFlight().get()).isZero();
+    }
+    
+    private void write(String yaml) throws IOException {
+        Files.write(configFile, yaml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.llm.controller;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.document.DocumentProcessor;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.example.llm.exception.GlobalExceptionHandler;
+import com.example.llm.service.LlmService;
+import com.example.llm.usage.QuotaStatus;
+import com.example.llm.usage.UsageLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Mono;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentControllerTest {
+
+    @Mock
+    private LlmService llmService;
+    
+    @Mock
+    private UsageLedger usageLedger;
+    
+    private GatedInputStream body;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        LlmProperties properties = new LlmProperties();
+        properties.getDocuments().setChunkTokens(50);
+        properties.getDocuments().setOverlapTokens(0);
+        DocumentController controller = new DocumentController(
+                new DocumentProcessor(llmService, properties), properties, usageLedger);
+        // Hands the controller a body that records who reads it
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .addFilter((request, response, chain) -> chain.doFilter(
+                        new HttpServletRequestWrapper((HttpServletRequest) request) {
+                            @Override
+                            public ServletInputStream getInputStream() {
+                                return body;
+                            }
+                        }, response))
+                .build();
+    }
+
+    @Test
+    void shouldReadTheBodyWhileMappingAfterTheHandlerReturns() throws Exception {
+        CountDownLatch mapping = new CountDownLatch(1);
+        when(llmService.chatCompletion(any(ChatRequest.class), eq(null))).thenAnswer(invocation -> {
+            mapping.countDown();
+            return Mono.just(response("partial"));
+        });
+        byte[] document = repeat(repeat("x", 199) + "\n", 100).getBytes(StandardCharsets.UTF_8);
+        // The second half of the body is only released once the first chunk is being mapped
+        body = new GatedInputStream(document, document.length / 2, mapping);
+        
+        MvcResult result = mockMvc.perform(post("/api/v1/llm/documents/map-reduce")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(document))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String events = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        
+        assertThat(body.streamed).isTrue();
+        assertThat(body.isFinished()).isTrue();
+        assertThat(body.readers).isNotEmpty()
+                .allSatisfy(thread -> assertThat(thread).startsWith("boundedElastic"))
+                .doesNotContain(Thread.currentThread().getName());
+        assertThat(events).contains("\"type\":\"map\"").contains("\"type\":\"result\"");
+    }
+    
+    @Test
+    void shouldRejectUserOverQuotaBeforeReadingTheBody() throws Exception {
+        when(usageLedger.isOverQuota("alice")).thenReturn(true);
+        when(usageLedger.getQuota("alice")).thenReturn(new QuotaStatus("alice", 100L, 120L, 0L, 0L, 1L, true));
+        byte[] document = "A short note.".getBytes(StandardCharsets.UTF_8);
+        body = new GatedInputStream(document, document.length, new CountDownLatch(0));
+        
+        MvcResult result = mockMvc.perform(post("/api/v1/llm/documents/map-reduce")
+                        .param("user", "alice")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(document))
+                .andReturn();
+        String events = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        
+        assertThat(events).contains("\"type\":\"error\"").contains("quota");
+        assertThat(body.readers).isEmpty();
+        verify(usageLedger).rejected("alice");
+        verifyNoInteractions(llmService);
+    }
+    
+    private static ChatResponse response(String content) {
+        return ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content(content).build())
+                        .build()))
+                .usage(ChatResponse.Usage.builder().promptTokens(2).completionTokens(1).totalTokens(3).build())
+                .build();
+    }
+    
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Serves {@code data} up to {@code gateAt}, then waits for {@code gate} before serving the rest.
+     */
+    private static final class GatedInputStream extends ServletInputStream {
+        
+        private final byte[] data;
+        private final int gateAt;
+        private final CountDownLatch gate;
+        private final Set<String> readers = ConcurrentHashMap.newKeySet();
+        private volatile boolean streamed;
+        private volatile int position;
+        
+        GatedInputStream(byte[] data, int gateAt, CountDownLatch gate) {
+            this.data = data;
+            this.gateAt = gateAt;
+            this.gate = gate;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            readers.add(Thread.currentThread().getName());
+            if (position == gateAt) {
+                try {
+                    streamed = gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            if (position >= data.length) {
+                return -1;
+            }
+            int end = Math.min(position < gateAt ? gateAt : data.length, position + length);
+            int count = end - position;
+            System.arraycopy(data, position, buffer, offset, count);
+            position = end;
+            return count;
+        }
+        
+        @Override
+        public boolean isFinished() {
+            return position >= data.length;
+        }
+        
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+        
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.llm.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentChunkerTest {
+
+    @Test
+    void shouldSplitIntoBoundedOverlappingChunksCoveringTheWholeText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Sentence number ").append(i).append(" talks about topic ").append(i % 7).append(". ");
+        }
+        
+        // 50 tokens ~ 200 chars per chunk, 10 tokens ~ 40 chars of overlap
+        List<String> chunks = DocumentChunker.chunks(() -> new StringReader(text.toString()), 50, 10)
+                .collectList()
+                .block();
+        
+        assertThat(chunks).hasSizeGreaterThan(40);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(200));
+        // Cut at sentence ends rather than mid-word
+        assertThat(chunks.subList(0, chunks.size() - 1)).allSatisfy(chunk -> assertThat(chunk).endsWith(". "));
+        assertThat(chunks.get(0)).startsWith("Sentence number 0 ");
+        assertThat(chunks.get(chunks.size() - 1)).endsWith("Sentence number 199 talks about topic 3. ");
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String overlap = chunks.get(i).substring(0, 10);
+            assertThat(previous).contains(overlap);
+        }
+    }
+
+    @Test
+    void shouldReadOnlyAsFarAsRequested() throws InterruptedException {
+        CountingReader reader = new CountingReader(new StringReader(repeat("word ", 10_000)));
+        
+        List<String> first = DocumentChunker.chunks(() -> reader, 100, 0)
+                .take(2)
+                .collectList()
+                .block();
+        
+        assertThat(first).hasSize(2);
+        assertThat(reader.read).isLessThan(2_000);
+        // The cancelled generator closes the reader on its own thread, possibly after take() completed
+        assertThat(reader.closed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void shouldEmitNothingForBlankInput() {
+        assertThat(DocumentChunker.chunks(() -> new StringReader("  \n "), 100, 10).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void shouldPreferParagraphBreaks() {
+        String text = repeat("a", 300) + "\n\n" + repeat("b. ", 80);
+        
+        assertThat(DocumentChunker.boundary(text, 400)).isEqualTo(302);
+    }
+    
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+    
+    private static final class CountingReader extends FilterReader {
+        private long read;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        
+        CountingReader(Reader in) {
+            super(in);
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                read += count;
+            }
+            return count;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.llm.document;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.DocumentProgress;
+import com.example.llm.exception.LlmException;
+import com.example.llm.service.Deadline;
+import com.example.llm.service.LlmService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentProcessorTest {
+
+    @Mock
+    private LlmService llmService;
+    
+    private LlmProperties properties;
+    private DocumentProcessor processor;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        properties = new LlmProperties();
+        properties.getDocuments().setChunkTokens(50);
+        properties.getDocuments().setOverlapTokens(0);
+        properties.getDocuments().setMapConcurrency(3);
+        properties.getDocuments().setReduceFanIn(4);
+        processor = new DocumentProcessor(llmService, properties);
+    }
+
+    @Test
+    void shouldMapChunksConcurrentlyAndReduceHierarchically() {
+        // Map steps answer "m", reduce steps answer "r"; each call takes 50ms
+        when(llmService.chatCompletion(any(ChatRequest.class), eq("openai"))).thenAnswer(invocation -> {
+            ChatRequest request = invocation.getArgument(0);
+            String answer = request.getMessages().get(1).getContent().contains("Partial results") ? "r" : "m";
+            return Mono.defer(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        return Mono.just(response(answer))
+                                .delayElement(Duration.ofMillis(50))
+                                .doOnNext(response -> running.decrementAndGet());
+                    });
+        });
+        
+        // 16 chunks of ~200 chars: 16 maps, then 4 + 1 reduces
+        String document = repeat(repeat("x", 199) + "\n", 16);
+        List<DocumentProgress> events = processor.process(() -> new StringReader(document), "Find risks", "openai", null, "alice")
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        
+        assertThat(events).filteredOn(event -> DocumentProgress.MAP.equals(event.getType())).hasSize(16);
+        assertThat(events).filteredOn(event -> DocumentProgress.REDUCE.equals(event.getType()))
+                .extracting(DocumentProgress::getLevel)
+                .containsExactly(1, 1, 1, 1, 2);
+        
+        DocumentProgress result = events.get(events.size() - 1);
+        assertThat(result.getType()).isEqualTo(DocumentProgress.RESULT);
+        assertThat(result.getContent()).isEqualTo("r");
+        assertThat(result.getLevel()).isEqualTo(2);
+        assertThat(result.getUsage().getTotalTokens()).isEqualTo(21 * 3);
+        assertThat(maxRunning.get()).isEqualTo(3);
+        
+        // Every map and reduce step is accounted to the caller
+        ArgumentCaptor<ChatRequest> requests = ArgumentCaptor.forClass(ChatRequest.class);
+        verify(llmService, times(21)).chatCompletion(requests.capture(), eq("openai"));
+        assertThat(requests.getAllValues()).extracting(ChatRequest::getUser).containsOnly("alice");
+    }
+
+    @Test
+    void shouldReturnSingleChunkMapResultWithoutReducing() {
+        when(llmService.chatCompletion(any(ChatRequest.class), eq(null))).thenReturn(Mono.just(response("short answer")));
+        
+        List<DocumentProgress> events = processor.process(() -> new StringReader("A short note."), null, null, null, null)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(events).extracting(DocumentProgress::getType)
+                .containsExactly(DocumentProgress.MAP, DocumentProgress.RESULT);
+        assertThat(events.get(1).getContent()).isEqualTo("short answer");
+        assertThat(events.get(1).getLevel()).isZero();
+    }
+
+    @Test
+    void shouldEndWithErrorEventWhenAStepFails() {
+        when(llmService.chatCompletion(any(ChatRequest.class), eq("openai")))
+                .thenReturn(Mono.error(new LlmException("Provider error: overloaded", "openai", 529)));
+        
+        List<DocumentProgress> events = processor.process(() -> new StringReader("Some text."), null, "openai", null, null)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getType()).isEqualTo(DocumentProgress.ERROR);
+        assertThat(events.get(0).getError()).contains("overloaded");
+    }
+
+    @Test
+    void shouldEndWithErrorEventWhenTheDeadlinePasses() {
+        // On a busy machine the deadline can pass before the first chunk reaches a step
+        lenient().when(llmService.chatCompletion(any(ChatRequest.class), eq("openai"))).thenReturn(Mono.never());
+        
+        List<DocumentProgress> events = processor.process(() -> new StringReader("Some text."), null, "openai", null, null)
+                .contextWrite(context -> Deadline.put(context, Deadline.after(Duration.ofMillis(100))))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getType()).isEqualTo(DocumentProgress.ERROR);
+        assertThat(events.get(0).getError()).contains("deadline");
+    }
+
+    @Test
+    void shouldGroupResultsByFanInAndTokenBudget() {
+        List<String> small = Collections.nCopies(9, "partial");
+        assertThat(DocumentProcessor.group(small, properties.getDocuments()))
+                .extracting(List::size)
+                .containsExactly(4, 5);
+        
+        List<String> large = Collections.nCopies(5, repeat("y", 120));
+        assertThat(DocumentProcessor.group(large, properties.getDocuments()))
+                .extracting(List::size)
+                .containsExactly(2, 3);
+    }
+    
+    private static ChatResponse response(String content) {
+        return ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content(content).build())
+                        .build()))
+                .usage(ChatResponse.Usage.builder().promptTokens(2).completionTokens(1).totalTokens(3).build())
+                .build();
+    }
+    
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.llm.health;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.SimpleStatusAggregator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderHealthMonitorTest {
+
+    private MockWebServer mockWebServer;
+    private LlmProperties properties;
+    private ProviderRegistry providerRegistry;
+    private ProviderHealthMonitor monitor;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        
+        LlmProperties.ProviderConfig openai = new LlmProperties.ProviderConfig();
+        openai.setEnabled(true);
+        openai.setBaseUrl(mockWebServer.url("/v1").toString());
+        openai.setApiKey("test-key");
+        openai.setDefaultModel("gpt-3.5-turbo");
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", openai);
+        
+        properties = new LlmProperties();
+        properties.setProviders(providers);
+        properties.getHealth().setEnabled(false);
+        properties.getHealth().setFailureThreshold(2);
+        
+        meterRegistry = new SimpleMeterRegistry();
+        providerRegistry = new ProviderRegistry(properties, new StandardEnvironment());
+        providerRegistry.start();
+        monitor = new ProviderHealthMonitor(properties, providerRegistry, WebClient.create(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void shouldTreatUnprobedProviderAsHealthy() {
+        assertThat(monitor.isHealthy("openai")).isTrue();
+        assertThat(monitor.getHealth("openai").getStatus()).isEqualTo(ProviderHealth.Status.UNKNOWN);
+    }
+
+    @Test
+    void shouldMarkProviderDownAfterConsecutiveFailuresAndRecover() throws Exception {
+        ProviderSettings openai = providerRegistry.current().getProvider("openai");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"data\":[]}"));
+        
+        ProviderHealth first = monitor.probe(openai, properties.getHealth()).block();
+        assertThat(first.getConsecutiveFailures()).isEqualTo(1);
+        assertThat(monitor.isHealthy("openai")).isTrue();
+        
+        ProviderHealth second = monitor.probe(openai, properties.getHealth()).block();
+        assertThat(second.getStatus()).isEqualTo(ProviderHealth.Status.DOWN);
+        assertThat(monitor.isHealthy("openai")).isFalse();
+        
+        ProviderHealth third = monitor.probe(openai, properties.getHealth()).block();
+        assertThat(third.getStatus()).isEqualTo(ProviderHealth.Status.UP);
+        assertThat(monitor.isHealthy("openai")).isTrue();
+        
+        RecordedRequest probe = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(probe.getMethod()).isEqualTo("GET");
+        assertThat(probe.getPath()).isEqualTo("/v1/models");
+        assertThat(probe.getHeader("Authorization")).isEqualTo("Bearer test-key");
+        assertThat(meterRegistry.get("llm.health.probe.latency").tag("outcome", "error").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldProbeWithOneTokenCompletionInCompletionMode() throws Exception {
+        properties.getHealth().setMode("completion");
+        mockWebServer.enqueue(new MockResponse().setBody("{}"));
+        
+        monitor.probe(providerRegistry.current().getProvider("openai"), properties.getHealth()).block();
+        
+        RecordedRequest probe = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(probe.getPath()).isEqualTo("/v1/chat/completions");
+        assertThat(probe.getBody().readUtf8()).contains("\"max_tokens\":1");
+    }
+
+    @Test
+    void shouldKeepReachableProviderUpWhenItDoesNotServeTheProbe() {
+        ProviderSettings openai = providerRegistry.current().getProvider("openai");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(429));
+        
+        monitor.probe(openai, properties.getHealth()).block();
+        ProviderHealth second = monitor.probe(openai, properties.getHealth()).block();
+        
+        assertThat(second.getStatus()).isEqualTo(ProviderHealth.Status.UP);
+        assertThat(second.getConsecutiveFailures()).isZero();
+        assertThat(monitor.isHealthy("openai")).isTrue();
+    }
+
+    @Test
+    void shouldMarkProviderDownWhenItRejectsTheCredentials() {
+        ProviderSettings openai = providerRegistry.current().getProvider("openai");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(401));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(403));
+        
+        monitor.probe(openai, properties.getHealth()).block();
+        ProviderHealth second = monitor.probe(openai, properties.getHealth()).block();
+        
+        assertThat(second.getStatus()).isEqualTo(ProviderHealth.Status.DOWN);
+        assertThat(monitor.isHealthy("openai")).isFalse();
+    }
+
+    @Test
+    void shouldReportUnknownRatherThanDownWhenNoProviderIsHealthy() {
+        ProviderSettings openai = providerRegistry.current().getProvider("openai");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+        monitor.probe(openai, properties.getHealth()).block();
+        monitor.probe(openai, properties.getHealth()).block();
+        
+        LlmProvidersHealthIndicator indicator = new LlmProvidersHealthIndicator(providerRegistry, monitor);
+        
+        assertThat(indicator.health().getStatus().getCode()).isEqualTo("UNKNOWN");
+        assertThat(indicator.health().getDetails()).containsEntry("healthyProviders", 0);
+        
+        // UNKNOWN ranks below UP, so an outage of every provider leaves the aggregate health UP
+        assertThat(new SimpleStatusAggregator().getAggregateStatus(Status.UP, indicator.health().getStatus()))
+                .isEqualTo(Status.UP);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.llm.journal;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the per-request cost of {@link RequestJournal#record} on the calling thread.
+ * Not a unit test; run manually, e.g.
+ * {@code java -cp target/test-classes:target/classes:<test classpath>
+ * com.example.llm.journal.RequestJournalBenchmark [threads] [sampleRate] [paced|saturated]}
+ * <p>
+ * In {@code paced} mode (the default) the callers record in chunks small enough for the buffer and
+ * wait, outside the timed region, for the writer to catch up, so every entry is accepted and the
+ * figure is the cost of the normal path. {@code saturated} mode records as fast as possible; most
+ * entries are then dropped and the figure is dominated by the cost of a full-buffer drop.
+ * Dropped and written counts are printed for both.
+ */
+public final class RequestJournalBenchmark {
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private RequestJournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        double sampleRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+        boolean paced = args.length <= 2 || !"saturated".equals(args[2]);
+        Path directory = Files.createTempDirectory("journal-benchmark");
+
+        LlmProperties properties = new LlmProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setSampleRate(sampleRate);
+        properties.getJournal().setBufferSize(BUFFER_SIZE);
+        RequestJournal journal = new RequestJournal(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        journal.start();
+
+        ChatRequest request = ChatRequest.builder()
+                .model("gpt-4o-mini")
+                .messages(Collections.singletonList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Summarize the quarterly report for the operations team in three bullet points.")
+                        .build()))
+                .build();
+        ChatResponse response = ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content("- Revenue grew 4%").build())
+                        .finishReason("stop")
+                        .build()))
+                .usage(ChatResponse.Usage.builder().promptTokens(24).completionTokens(8).totalTokens(32).build())
+                .build();
+
+        // Chunks of all threads together fill at most half of the buffer on top of a quarter left pending
+        int chunk = paced ? Math.max(1, BUFFER_SIZE / (4 * threads)) : ITERATIONS;
+        run(journal, request, response, threads, WARMUP, chunk);
+        awaitDrained(journal);
+        long droppedBefore = journal.getDropped();
+        long writtenBefore = journal.getWritten();
+
+        long nanos = run(journal, request, response, threads, ITERATIONS, chunk);
+        awaitDrained(journal);
+        long dropped = journal.getDropped() - droppedBefore;
+        long written = journal.getWritten() - writtenBefore;
+        journal.stop();
+
+        long total = (long) threads * ITERATIONS;
+        System.out.printf("mode=%s threads=%d sampleRate=%.3f records=%d written=%d dropped=%d avg=%.1f ns/record%n",
+                paced ? "paced" : "saturated", threads, sampleRate, total, written, dropped, (double) nanos / total);
+        if (paced && dropped > 0) {
+            System.out.println("WARNING: entries were dropped, so the figure includes the drop path");
+        }
+    }
+
+    /**
+     * Record {@code iterations} entries per thread and return the total time spent inside
+     * {@link RequestJournal#record}. Between chunks a thread waits for the buffer to drain below a
+     * quarter; the wait is not timed.
+     */
+    private static long run(RequestJournal journal, ChatRequest request, ChatResponse response,
+                            int threads, int iterations, int chunk) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong elapsed = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                long timed = 0;
+                for (int recorded = 0; recorded < iterations; ) {
+                    while (journal.getPending() > BUFFER_SIZE / 4) {
+                        Thread.yield();
+                    }
+                    int count = Math.min(chunk, iterations - recorded);
+                    long start = System.nanoTime();
+                    for (int i = 0; i < count; i++) {
+                        journal.record("openai", request, response, null, 250_000_000L);
+                    }
+                    timed += System.nanoTime() - start;
+                    recorded += count;
+                }
+                elapsed.addAndGet(timed);
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return elapsed.get();
+    }
+
+    private static void awaitDrained(RequestJournal journal) throws InterruptedException {
+        while (journal.getPending() > 0) {
+            Thread.sleep(10);
+        }
+        // The writer may still be serializing the entries it took last
+        Thread.sleep(100);
+    }
+}
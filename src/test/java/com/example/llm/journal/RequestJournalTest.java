@@ -0,0 +1,126 @@
+package com.example.llm.journal;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldWriteRedactedSampledEntries() throws Exception {
+        RequestJournal journal = journal(1.0);
+        journal.start();
+
+        ChatRequest request = ChatRequest.builder()
+                .model("gpt-4o-mini")
+                .messages(Collections.singletonList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Email jane@example.com about key sk-abcdefghijkl")
+                        .build()))
+                .build();
+        ChatResponse response = ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content("Done").build())
+                        .finishReason("stop")
+                        .build()))
+                .usage(ChatResponse.Usage.builder().promptTokens(12).completionTokens(1).totalTokens(13).build())
+                .build();
+
+        journal.record("openai", request, response, null, 1_500_000L);
+        journal.record("openai", request, null, new IllegalStateException("boom"), 2_000_000L);
+        journal.stop();
+
+        List<JsonNode> entries = readEntries();
+        assertThat(entries).hasSize(2);
+
+        JsonNode success = entries.get(0);
+        assertThat(success.get("provider").asText()).isEqualTo("openai");
+        assertThat(success.get("latencyMicros").asLong()).isEqualTo(1500L);
+        assertThat(success.get("promptTokens").asInt()).isEqualTo(12);
+        assertThat(success.get("prompt").asText())
+                .contains("[REDACTED]")
+                .doesNotContain("jane@example.com")
+                .doesNotContain("sk-abcdefghijkl");
+        assertThat(success.get("response").asText()).isEqualTo("Done");
+
+        assertThat(entries.get(1).get("outcome").asText()).isEqualTo("error");
+        assertThat(entries.get(1).get("error").asText()).isEqualTo("boom");
+    }
+
+    @Test
+    void shouldOmitBodiesWhenNotSampled() throws Exception {
+        RequestJournal journal = journal(0.0);
+        journal.start();
+
+        ChatRequest request = ChatRequest.builder()
+                .model("llama2")
+                .messages(Collections.singletonList(ChatRequest.Message.builder().role("user").content("Hi").build()))
+                .build();
+        journal.record("ollama", request, null, null, 1000L);
+        journal.stop();
+
+        List<JsonNode> entries = readEntries();
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).has("prompt")).isFalse();
+    }
+
+    @Test
+    void shouldIgnoreRecordsWhenDisabled() {
+        LlmProperties properties = new LlmProperties();
+        RequestJournal journal = new RequestJournal(properties, objectMapper, new SimpleMeterRegistry());
+        journal.start();
+
+        assertThat(journal.isEnabled()).isFalse();
+        journal.record("openai", new ChatRequest(), null, null, 1L);
+    }
+
+    private RequestJournal journal(double sampleRate) {
+        LlmProperties properties = new LlmProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setSampleRate(sampleRate);
+        return new RequestJournal(properties, objectMapper, new SimpleMeterRegistry());
+    }
+
+    private List<JsonNode> readEntries() throws Exception {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.sorted().collect(Collectors.toList());
+        }
+        List<JsonNode> entries = new ArrayList<>();
+        for (Path file : files) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    entries.add(objectMapper.readTree(line));
+                }
+            }
+        }
+        return entries;
+    }
+}
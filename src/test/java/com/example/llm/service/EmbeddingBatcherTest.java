@@ -0,0 +1,123 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingBatcherTest {
+
+    private LlmProperties llmProperties;
+    private EmbeddingBatcher batcher;
+    private final List<List<String>> dispatched = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        llmProperties = new LlmProperties();
+        llmProperties.getEmbeddings().setBatchWindowMs(50);
+        llmProperties.getEmbeddings().setMaxBatchSize(4);
+        batcher = new EmbeddingBatcher(llmProperties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldSplitConcurrentInputsIntoBatchesOfMaxSize() {
+        Function<List<String>, Mono<List<float[]>>> dispatcher = inputs -> {
+            dispatched.add(inputs);
+            List<float[]> vectors = new ArrayList<>();
+            for (String input : inputs) {
+                vectors.add(new float[] {input.length()});
+            }
+            return Mono.just(vectors);
+        };
+
+        StepVerifier.create(Flux.range(1, 10)
+                        .flatMapSequential(i -> batcher.submit("openai", "small", repeat("x", i), dispatcher))
+                        .map(vector -> (int) vector[0])
+                        .collectList())
+                .assertNext(lengths -> assertThat(lengths).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10))
+                .verifyComplete();
+
+        assertThat(dispatched).hasSize(3);
+        assertThat(dispatched.get(0)).hasSize(4);
+        assertThat(dispatched.get(2)).hasSize(2);
+    }
+
+    @Test
+    void shouldFailEveryCallerWhenUpstreamFails() {
+        Function<List<String>, Mono<List<float[]>>> dispatcher =
+                inputs -> Mono.error(new IllegalStateException("upstream down"));
+
+        StepVerifier.create(Mono.zip(
+                        batcher.submit("openai", "small", "a", dispatcher).onErrorReturn(new float[0]),
+                        batcher.submit("openai", "small", "b", dispatcher).onErrorReturn(new float[0])))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).isEmpty();
+                    assertThat(results.getT2()).isEmpty();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotDispatchInputsWhoseCallerGaveUpWhileQueued() {
+        Function<List<String>, Mono<List<float[]>>> dispatcher = inputs -> {
+            dispatched.add(inputs);
+            List<float[]> vectors = new ArrayList<>();
+            for (String input : inputs) {
+                vectors.add(new float[] {input.length()});
+            }
+            return Mono.just(vectors);
+        };
+
+        StepVerifier.create(Mono.zip(
+                        batcher.submit("openai", "small", "abandoned", dispatcher)
+                                .timeout(Duration.ofMillis(10))
+                                .onErrorReturn(new float[0]),
+                        batcher.submit("openai", "small", "kept", dispatcher)))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).isEmpty();
+                    assertThat(results.getT2()).containsExactly(4f);
+                })
+                .verifyComplete();
+
+        assertThat(dispatched).containsExactly(Collections.singletonList("kept"));
+    }
+
+    @Test
+    void shouldRetireBatchesOnceDispatched() {
+        Function<List<String>, Mono<List<float[]>>> dispatcher = inputs -> {
+            List<float[]> vectors = new ArrayList<>();
+            for (String input : inputs) {
+                vectors.add(new float[] {input.length()});
+            }
+            return Mono.just(vectors);
+        };
+
+        StepVerifier.create(Flux.range(1, 20)
+                        .flatMap(i -> batcher.submit("openai", "client-model-" + i, "text", dispatcher))
+                        .count())
+                .expectNext(20L)
+                .verifyComplete();
+
+        assertThat(batcher.getOpenBatches()).isZero();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.llm.service;
 
+import com.example.llm.capture.TrafficCapture;
 import com.example.llm.config.LlmProperties;
+import com.example.llm.config.ProviderRegistry;
 import com.example.llm.dto.ChatRequest;
 import com.example.llm.dto.ChatResponse;
+import com.example.llm.dto.EmbeddingRequest;
+import com.example.llm.dto.EmbeddingResponse;
 import com.example.llm.exception.LlmException;
+import com.example.llm.health.ProviderHealthMonitor;
+import com.example.llm.journal.RequestJournal;
+import com.example.llm.usage.UsageLedger;
+import com.example.llm.warmup.ModelWarmer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -11,16 +21,27 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.StandardEnvironment;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import reactor.util.function.Tuple2;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -32,6 +53,10 @@ class LlmServiceImplTest {
     private LlmProperties llmProperties;
     
     private MockWebServer mockWebServer;
+    private ProviderRegistry providerRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private LlmProperties usageProperties;
+    private UsageLedger usageLedger;
     private LlmServiceImpl llmService;
     private WebClient webClient;
 
@@ -44,11 +69,26 @@ class LlmServiceImplTest {
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
                 .build();
                 
-        llmService = new LlmServiceImpl(llmProperties, webClient);
+        meterRegistry = new SimpleMeterRegistry();
+        usageProperties = new LlmProperties();
+        usageLedger = new UsageLedger(usageProperties, new ObjectMapper(), meterRegistry);
+        providerRegistry = new ProviderRegistry(llmProperties, new StandardEnvironment());
+        ProviderHealthMonitor healthMonitor = new ProviderHealthMonitor(llmProperties, providerRegistry, webClient, meterRegistry);
+        llmService = new LlmServiceImpl(llmProperties, providerRegistry, webClient,
+                new ModelRouter(llmProperties, meterRegistry),
+                new EmbeddingBatcher(llmProperties, meterRegistry),
+                new RequestJournal(llmProperties, new ObjectMapper(), meterRegistry),
+                new TrafficCapture(llmProperties, new ObjectMapper(), meterRegistry),
+                new PromptCompactor(llmProperties),
+                healthMonitor,
+                usageLedger,
+                new ModelWarmer(providerRegistry, healthMonitor, webClient, meterRegistry),
+                meterRegistry);
     }
 
     @AfterEach
     void tearDown() throws IOException {
+        usageLedger.stop();
         mockWebServer.shutdown();
     }
 
@@ -66,6 +106,7 @@ class LlmServiceImplTest {
         providers.put("anthropic", disabledConfig);
         
         when(llmProperties.getProviders()).thenReturn(providers);
+        providerRegistry.apply(llmProperties, "test");
         
         // When
         String[] availableProviders = llmService.getAvailableProviders();
@@ -89,6 +130,7 @@ class LlmServiceImplTest {
         Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
         providers.put("openai", config);
         when(llmProperties.getProviders()).thenReturn(providers);
+        providerRegistry.apply(llmProperties, "test");
         
         // When & Then
         assertThat(llmService.isProviderAvailable("openai")).isTrue();
@@ -100,6 +142,7 @@ class LlmServiceImplTest {
         // Given
         when(llmProperties.getProviders()).thenReturn(Collections.emptyMap());
         when(llmProperties.getDefaultProvider()).thenReturn("openai");
+        providerRegistry.apply(llmProperties, "test");
         
         ChatRequest request = ChatRequest.builder()
                 .messages(Arrays.asList(ChatRequest.Message.builder()
@@ -158,6 +201,7 @@ class LlmServiceImplTest {
         when(llmProperties.getMaxTokens()).thenReturn(1000);
         when(llmProperties.getTemperature()).thenReturn(0.7);
         when(llmProperties.getStream()).thenReturn(false);
+        providerRegistry.apply(llmProperties, "test");
         
         ChatRequest request = ChatRequest.builder()
                 .messages(Arrays.asList(ChatRequest.Message.builder()
@@ -180,4 +224,359 @@ class LlmServiceImplTest {
         assertThat(recordedRequest.getMethod()).isEqualTo("POST");
         assertThat(recordedRequest.getHeader("Authorization")).isEqualTo("Bearer test-key");
     }
+
+    @Test
+    void shouldEscalateRoutedRequestWhenAnswerIsTruncated() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(completionJson("gpt-4o-mini", "The answer is", "length"))
+                .addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(completionJson("gpt-4o", "The answer is 42.", "stop"))
+                .addHeader("Content-Type", "application/json"));
+
+        LlmProperties.ProviderConfig config = new LlmProperties.ProviderConfig();
+        config.setEnabled(true);
+        config.setBaseUrl(mockWebServer.url("/").toString().replaceAll("/$", ""));
+        config.setApiKey("test-key");
+        config.setDefaultModel("gpt-4o");
+
+        LlmProperties.RoutingTarget small = new LlmProperties.RoutingTarget();
+        small.setProvider("openai");
+        small.setModel("gpt-4o-mini");
+        LlmProperties.RoutingTarget large = new LlmProperties.RoutingTarget();
+        large.setProvider("openai");
+        large.setModel("gpt-4o");
+        LlmProperties.RoutingRule rule = new LlmProperties.RoutingRule();
+        rule.setName("short");
+        rule.setMaxPromptTokens(100);
+        rule.setTargets(Collections.singletonList(small));
+        rule.setEscalateTo(large);
+        LlmProperties.Routing routing = new LlmProperties.Routing();
+        routing.setEnabled(true);
+        routing.setRules(Collections.singletonList(rule));
+
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", config);
+        when(llmProperties.getProviders()).thenReturn(providers);
+        when(llmProperties.getRouting()).thenReturn(routing);
+        when(llmProperties.getMaxTokens()).thenReturn(1000);
+        when(llmProperties.getTemperature()).thenReturn(0.7);
+        when(llmProperties.getStream()).thenReturn(false);
+        providerRegistry.apply(llmProperties, "test");
+
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("What is the answer?")
+                        .build()))
+                .build();
+
+        // When & Then
+        StepVerifier.create(llmService.chatCompletion(request, null, null))
+                .assertNext(response -> assertThat(response.getModel()).isEqualTo("gpt-4o"))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).contains("\"model\":\"gpt-4o-mini\"");
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).contains("\"model\":\"gpt-4o\"");
+    }
+
+    @Test
+    void shouldFallBackToNextRoutingTargetWhenOneFails() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500).setBody("{\"error\":\"model crashed\"}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(completionJson("model-b", "Hello from b", "stop"))
+                .addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(completionJson("model-b", "Hello again", "stop"))
+                .addHeader("Content-Type", "application/json"));
+
+        LlmProperties.ProviderConfig config = new LlmProperties.ProviderConfig();
+        config.setEnabled(true);
+        config.setBaseUrl(mockWebServer.url("/").toString().replaceAll("/$", ""));
+        config.setApiKey("test-key");
+        config.setDefaultModel("model-a");
+
+        LlmProperties.RoutingTarget first = new LlmProperties.RoutingTarget();
+        first.setProvider("openai");
+        first.setModel("model-a");
+        LlmProperties.RoutingTarget second = new LlmProperties.RoutingTarget();
+        second.setProvider("openai");
+        second.setModel("model-b");
+        LlmProperties.RoutingRule rule = new LlmProperties.RoutingRule();
+        rule.setName("short");
+        rule.setTargets(Arrays.asList(first, second));
+        LlmProperties.Routing routing = new LlmProperties.Routing();
+        routing.setEnabled(true);
+        routing.setRules(Collections.singletonList(rule));
+
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", config);
+        when(llmProperties.getProviders()).thenReturn(providers);
+        when(llmProperties.getRouting()).thenReturn(routing);
+        when(llmProperties.getMaxTokens()).thenReturn(1000);
+        when(llmProperties.getTemperature()).thenReturn(0.7);
+        when(llmProperties.getStream()).thenReturn(false);
+        providerRegistry.apply(llmProperties, "test");
+
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Hello")
+                        .build()))
+                .build();
+
+        // When & Then: the failing target is retried on the other one, then skipped
+        StepVerifier.create(llmService.chatCompletion(request, null, null))
+                .assertNext(response -> assertThat(response.getModel()).isEqualTo("model-b"))
+                .verifyComplete();
+        StepVerifier.create(llmService.chatCompletion(request, null, null))
+                .assertNext(response -> assertThat(response.getModel()).isEqualTo("model-b"))
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(3);
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).contains("\"model\":\"model-a\"");
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).contains("\"model\":\"model-b\"");
+        assertThat(mockWebServer.takeRequest().getBody().readUtf8()).contains("\"model\":\"model-b\"");
+    }
+
+    @Test
+    void shouldCoalesceConcurrentEmbeddingRequests() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"object\": \"list\", \"data\": ["
+                    + "{\"object\": \"embedding\", \"index\": 1, \"embedding\": [0.5, 0.25]},"
+                    + "{\"object\": \"embedding\", \"index\": 0, \"embedding\": [1.0, 2.0]}"
+                    + "]}")
+                .addHeader("Content-Type", "application/json"));
+
+        LlmProperties.ProviderConfig config = new LlmProperties.ProviderConfig();
+        config.setEnabled(true);
+        config.setBaseUrl(mockWebServer.url("/").toString().replaceAll("/$", ""));
+        config.setApiKey("test-key");
+        config.setEmbeddingModel("text-embedding-3-small");
+
+        LlmProperties.Embeddings embeddings = new LlmProperties.Embeddings();
+        embeddings.setBatchWindowMs(200);
+
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", config);
+        when(llmProperties.getProviders()).thenReturn(providers);
+        when(llmProperties.getEmbeddings()).thenReturn(embeddings);
+        providerRegistry.apply(llmProperties, "test");
+
+        EmbeddingRequest first = EmbeddingRequest.builder().input(Collections.singletonList("first")).build();
+        EmbeddingRequest second = EmbeddingRequest.builder()
+                .input(Collections.singletonList("second"))
+                .encodingFormat("base64")
+                .build();
+
+        // When
+        Mono<Tuple2<EmbeddingResponse, EmbeddingResponse>> both = Mono.zip(
+                llmService.embeddings(first, "openai"),
+                llmService.embeddings(second, "openai"));
+
+        // Then
+        StepVerifier.create(both)
+                .assertNext(responses -> {
+                    assertThat((float[]) responses.getT1().getData().get(0).getEmbedding())
+                            .containsExactly(1.0f, 2.0f);
+                    byte[] packed = Base64.getDecoder().decode((String) responses.getT2().getData().get(0).getEmbedding());
+                    FloatBuffer vector = ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+                    assertThat(vector.get(0)).isEqualTo(0.5f);
+                    assertThat(vector.get(1)).isEqualTo(0.25f);
+                })
+                .verifyComplete();
+
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertThat(recordedRequest.getPath()).isEqualTo("/embeddings");
+        assertThat(recordedRequest.getBody().readUtf8())
+                .contains("\"input\":[\"first\",\"second\"]")
+                .contains("\"model\":\"text-embedding-3-small\"");
+    }
+
+    @Test
+    void shouldStreamFanOutResultsInCompletionOrderAndCancelLosers() throws Exception {
+        // Given
+        MockWebServer slowServer = new MockWebServer();
+        slowServer.start();
+        try {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody(completionJson("fast-model", "fast", "stop"))
+                    .addHeader("Content-Type", "application/json")
+                    .setBodyDelay(50, TimeUnit.MILLISECONDS));
+            slowServer.enqueue(new MockResponse()
+                    .setBody(completionJson("slow-model", "slow", "stop"))
+                    .addHeader("Content-Type", "application/json")
+                    .setBodyDelay(1, TimeUnit.SECONDS));
+
+            Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+            providers.put("fast", providerConfig(mockWebServer));
+            providers.put("slow", providerConfig(slowServer));
+            when(llmProperties.getProviders()).thenReturn(providers);
+            when(llmProperties.getMaxTokens()).thenReturn(1000);
+            when(llmProperties.getTemperature()).thenReturn(0.7);
+            when(llmProperties.getStream()).thenReturn(false);
+            providerRegistry.apply(llmProperties, "test");
+
+            ChatRequest request = ChatRequest.builder()
+                    .messages(Arrays.asList(ChatRequest.Message.builder()
+                            .role("user")
+                            .content("Hello")
+                            .build()))
+                    .build();
+
+            // When & Then
+            long start = System.nanoTime();
+            StepVerifier.create(llmService.fanOut(request, Arrays.asList("slow", "fast", "missing"), 1))
+                    .assertNext(result -> {
+                        assertThat(result.getProvider()).isEqualTo("missing");
+                        assertThat(result.isSuccess()).isFalse();
+                        assertThat(result.getStatusCode()).isEqualTo(400);
+                    })
+                    .assertNext(result -> {
+                        assertThat(result.getProvider()).isEqualTo("fast");
+                        assertThat(result.isSuccess()).isTrue();
+                        assertThat(result.getResponse().getModel()).isEqualTo("fast-model");
+                    })
+                    .verifyComplete();
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(800L);
+            assertThat(slowServer.getRequestCount()).isEqualTo(1);
+        } finally {
+            slowServer.shutdown();
+        }
+    }
+
+    @Test
+    void shouldCancelUpstreamWhenClientDeadlineExpires() {
+        // Given
+        mockWebServer.enqueue(new MockResponse()
+                .setBody(completionJson("test-model", "late", "stop"))
+                .addHeader("Content-Type", "application/json")
+                .setHeadersDelay(2, TimeUnit.SECONDS));
+        
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", providerConfig(mockWebServer));
+        when(llmProperties.getProviders()).thenReturn(providers);
+        providerRegistry.apply(llmProperties, "test");
+        
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Hello")
+                        .build()))
+                .build();
+        
+        // When & Then
+        long start = System.nanoTime();
+        StepVerifier.create(llmService.chatCompletion(request, "openai")
+                        .contextWrite(context -> Deadline.put(context, Deadline.after(Duration.ofMillis(200)))))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(LlmException.class);
+                    assertThat(((LlmException) error).getStatusCode()).isEqualTo(504);
+                })
+                .verify();
+        
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000L);
+        assertThat(meterRegistry.get("llm.upstream.wasted.tokens").tag("reason", "timeout").summary().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCallUpstreamWhenDeadlineAlreadyExpired() {
+        // Given
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", providerConfig(mockWebServer));
+        when(llmProperties.getProviders()).thenReturn(providers);
+        providerRegistry.apply(llmProperties, "test");
+        
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Hello")
+                        .build()))
+                .build();
+        
+        // When & Then
+        StepVerifier.create(llmService.chatCompletion(request, "openai")
+                        .contextWrite(context -> Deadline.put(context, Deadline.after(Duration.ZERO))))
+                .expectErrorSatisfies(error -> assertThat(((LlmException) error).getStatusCode()).isEqualTo(504))
+                .verify();
+        
+        assertThat(mockWebServer.getRequestCount()).isZero();
+    }
+
+    @Test
+    void shouldRejectRequestsOnceUserQuotaIsUsedUp(@TempDir Path usageDir) {
+        // Given
+        usageProperties.getUsage().setEnabled(true);
+        usageProperties.getUsage().setDirectory(usageDir.toString());
+        usageProperties.getUsage().getTokenQuotas().put("alice", 30L);
+        usageLedger.start();
+        
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("{"
+                        + "\"model\": \"test-model\","
+                        + "\"choices\": [{\"index\": 0, \"message\": {\"role\": \"assistant\", \"content\": \"Hi\"}}],"
+                        + "\"usage\": {\"prompt_tokens\": 25, \"completion_tokens\": 5, \"total_tokens\": 30}"
+                        + "}")
+                .addHeader("Content-Type", "application/json"));
+        
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("openai", providerConfig(mockWebServer));
+        when(llmProperties.getProviders()).thenReturn(providers);
+        providerRegistry.apply(llmProperties, "test");
+        
+        ChatRequest request = ChatRequest.builder()
+                .messages(Arrays.asList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content("Hello")
+                        .build()))
+                .user("alice")
+                .build();
+        
+        // When & Then
+        StepVerifier.create(llmService.chatCompletion(request, "openai"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(llmService.chatCompletion(request, "openai"))
+                .expectErrorSatisfies(error -> assertThat(((LlmException) error).getStatusCode()).isEqualTo(429))
+                .verify();
+        StepVerifier.create(llmService.fanOut(request, Arrays.asList("openai", "backup"), null))
+                .expectNextCount(2)
+                .verifyComplete();
+        
+        assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        // A fan-out is one request against the quota, however many providers it targets
+        assertThat(meterRegistry.get("llm.usage.quota.rejections").counter().count()).isEqualTo(2.0);
+        assertThat(usageLedger.query("alice", "openai", "test-model", null, null))
+                .singleElement()
+                .satisfies(record -> assertThat(record.getTotalTokens()).isEqualTo(30));
+    }
+
+    private static LlmProperties.ProviderConfig providerConfig(MockWebServer server) {
+        LlmProperties.ProviderConfig config = new LlmProperties.ProviderConfig();
+        config.setEnabled(true);
+        config.setBaseUrl(server.url("/").toString().replaceAll("/$", ""));
+        config.setApiKey("test-key");
+        config.setDefaultModel("test-model");
+        return config;
+    }
+
+    private static String completionJson(String model, String content, String finishReason) {
+        return "{"
+            + "\"id\": \"chatcmpl-1\","
+            + "\"object\": \"chat.completion\","
+            + "\"model\": \"" + model + "\","
+            + "\"choices\": [{"
+            + "    \"index\": 0,"
+            + "    \"message\": {\"role\": \"assistant\", \"content\": \"" + content + "\"},"
+            + "    \"finish_reason\": \"" + finishReason + "\""
+            + "}]"
+            + "}";
+    }
 }
@@ -0,0 +1,160 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import com.example.llm.dto.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelRouterTest {
+
+    private LlmProperties llmProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private ModelRouter modelRouter;
+
+    @BeforeEach
+    void setUp() {
+        llmProperties = new LlmProperties();
+        llmProperties.getRouting().setEnabled(true);
+
+        LlmProperties.RoutingRule small = new LlmProperties.RoutingRule();
+        small.setName("small");
+        small.setMaxPromptTokens(100);
+        small.setMaxCompletionTokens(256);
+        small.setTargets(Arrays.asList(target("openai", "gpt-4o-mini"), target("ollama", "llama3")));
+        small.setEscalateTo(target("openai", "gpt-4o"));
+
+        LlmProperties.RoutingRule classify = new LlmProperties.RoutingRule();
+        classify.setName("classify");
+        classify.setTaskHints(Collections.singletonList("classify"));
+        classify.setTargets(Collections.singletonList(target("ollama", "llama3")));
+
+        llmProperties.getRouting().setRules(Arrays.asList(small, classify));
+
+        meterRegistry = new SimpleMeterRegistry();
+        modelRouter = new ModelRouter(llmProperties, meterRegistry);
+    }
+
+    @Test
+    void shouldRouteShortPromptToFastestTarget() {
+        modelRouter.recordLatency("openai", "gpt-4o-mini", 900_000_000L);
+        modelRouter.recordLatency("ollama", "llama3", 200_000_000L);
+
+        RoutingDecision decision = modelRouter.route(request("Hi", 100), null, null, provider -> true);
+
+        assertThat(decision).isNotNull();
+        assertThat(decision.getRule()).isEqualTo("small");
+        assertThat(decision.getProvider()).isEqualTo("ollama");
+        assertThat(decision.canEscalate()).isTrue();
+        assertThat(meterRegistry.counter("llm.routing.decisions",
+                "rule", "small", "provider", "ollama", "model", "llama3").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldRespectRequestedProviderAndAvailability() {
+        RoutingDecision decision = modelRouter.route(request("Hi", 100), "openai", null, provider -> true);
+        assertThat(decision.getModel()).isEqualTo("gpt-4o-mini");
+
+        decision = modelRouter.route(request("Hi", 100), null, null, "ollama"::equals);
+        assertThat(decision.getProvider()).isEqualTo("ollama");
+    }
+
+    @Test
+    void shouldFallThroughToTaskHintRuleForLargePrompts() {
+        ChatRequest large = request(repeat("word ", 200), 100);
+
+        assertThat(modelRouter.route(large, null, null, provider -> true)).isNull();
+
+        RoutingDecision decision = modelRouter.route(large, null, "classify", provider -> true);
+        assertThat(decision.getRule()).isEqualTo("classify");
+        assertThat(decision.canEscalate()).isFalse();
+    }
+
+    @Test
+    void shouldNotRouteWhenModelIsExplicitOrRoutingDisabled() {
+        ChatRequest explicit = request("Hi", 100);
+        explicit.setModel("gpt-4");
+        assertThat(modelRouter.route(explicit, null, null, provider -> true)).isNull();
+
+        llmProperties.getRouting().setEnabled(false);
+        assertThat(modelRouter.route(request("Hi", 100), null, null, provider -> true)).isNull();
+    }
+
+    @Test
+    void shouldSkipFailingTargetAndFallBackToTheNextOne() {
+        RoutingDecision first = modelRouter.route(request("Hi", 100), null, null, provider -> true);
+        assertThat(first.getModel()).isEqualTo("gpt-4o-mini");
+
+        modelRouter.recordFailure("openai", "gpt-4o-mini");
+
+        RoutingDecision fallback = modelRouter.fallback(first, provider -> true);
+        assertThat(fallback.getProvider()).isEqualTo("ollama");
+        assertThat(fallback.getModel()).isEqualTo("llama3");
+        assertThat(fallback.canEscalate()).isTrue();
+        assertThat(modelRouter.route(request("Hi", 100), null, null, provider -> true).getModel()).isEqualTo("llama3");
+
+        // With every target failing, the escalation target is the last resort
+        modelRouter.recordFailure("ollama", "llama3");
+        RoutingDecision last = modelRouter.fallback(fallback, provider -> true);
+        assertThat(last.getModel()).isEqualTo("gpt-4o");
+        assertThat(last.canEscalate()).isFalse();
+        assertThat(modelRouter.fallback(last, provider -> true)).isNull();
+    }
+
+    @Test
+    void shouldOnlyTrackConfiguredTargets() {
+        modelRouter.recordLatency("openai", "client-chosen-model", 1_000_000L);
+        modelRouter.recordFailure("openai", "client-chosen-model");
+
+        assertThat(modelRouter.getAverageLatencyNanos("openai", "client-chosen-model")).isZero();
+        assertThat(modelRouter.isBackingOff("openai", "client-chosen-model")).isFalse();
+    }
+
+    @Test
+    void shouldEscalateTruncatedOrEmptyResponses() {
+        assertThat(modelRouter.shouldEscalate(response("partial", "length"))).isTrue();
+        assertThat(modelRouter.shouldEscalate(response(" ", "stop"))).isTrue();
+        assertThat(modelRouter.shouldEscalate(new ChatResponse())).isTrue();
+        assertThat(modelRouter.shouldEscalate(response("Paris", "stop"))).isFalse();
+    }
+
+    private static LlmProperties.RoutingTarget target(String provider, String model) {
+        LlmProperties.RoutingTarget target = new LlmProperties.RoutingTarget();
+        target.setProvider(provider);
+        target.setModel(model);
+        return target;
+    }
+
+    private static ChatRequest request(String content, int maxTokens) {
+        return ChatRequest.builder()
+                .messages(Collections.singletonList(ChatRequest.Message.builder()
+                        .role("user")
+                        .content(content)
+                        .build()))
+                .maxTokens(maxTokens)
+                .build();
+    }
+
+    private static ChatResponse response(String content, String finishReason) {
+        return ChatResponse.builder()
+                .choices(Collections.singletonList(ChatResponse.Choice.builder()
+                        .message(ChatRequest.Message.builder().role("assistant").content(content).build())
+                        .finishReason(finishReason)
+                        .build()))
+                .build();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.llm.service;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.dto.ChatRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptCompactorTest {
+
+    private LlmProperties llmProperties;
+    private PromptCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        llmProperties = new LlmProperties();
+        llmProperties.getCompaction().setEnabled(true);
+        compactor = new PromptCompactor(llmProperties);
+    }
+
+    @Test
+    void shouldDropRepeatedSystemMessagesAndRedundantWhitespace() {
+        PromptCompactor.Result result = compactor.compact(Arrays.asList(
+                message("system", "You are helpful.  "),
+                message("user", "Hello\n\n\n\n  world   "),
+                message("system", "You are helpful."),
+                message("user", "Again")));
+
+        assertThat(contents(result.getMessages())).containsExactly("You are helpful.", "Hello\n\n  world", "Again");
+        assertThat(result.getDropped()).isEmpty();
+        assertThat(result.getTokensAfter()).isLessThan(result.getTokensBefore());
+    }
+
+    @Test
+    void shouldKeepSystemAndMostRecentTurns() {
+        llmProperties.getCompaction().setKeepRecentTurns(2);
+
+        PromptCompactor.Result result = compactor.compact(Arrays.asList(
+                message("system", "Rules"),
+                message("user", "one"),
+                message("assistant", "two"),
+                message("user", "three"),
+                message("assistant", "four"),
+                message("user", "five")));
+
+        assertThat(contents(result.getMessages())).containsExactly("Rules", "three", "four", "five");
+        assertThat(contents(result.getDropped())).containsExactly("one", "two");
+    }
+
+    @Test
+    void shouldNeverStartKeptHistoryWithAssistantReply() {
+        llmProperties.getCompaction().setKeepRecentTurns(2);
+
+        PromptCompactor.Result result = compactor.compact(Arrays.asList(
+                message("assistant", "How can I help?"),
+                message("user", "one"),
+                message("assistant", "two"),
+                message("user", "three")));
+
+        assertThat(contents(result.getMessages())).containsExactly("one", "two", "three");
+        assertThat(result.getMessages().get(0).getRole()).isEqualTo("user");
+        assertThat(contents(result.getDropped())).containsExactly("How can I help?");
+    }
+
+    @Test
+    void shouldDropWholeTurnWhenItDoesNotFitTheBudget() {
+        llmProperties.getCompaction().setMaxPromptTokens(30);
+
+        PromptCompactor.Result result = compactor.compact(Arrays.asList(
+                message("user", "question"),
+                message("assistant", repeat("long answer ", 20)),
+                message("user", "follow-up")));
+
+        assertThat(contents(result.getMessages())).containsExactly("follow-up");
+        assertThat(result.getDropped()).hasSize(2);
+    }
+
+    @Test
+    void shouldCollapseRunsOfSpacesAndTabsInsideLines() {
+        assertThat(PromptCompactor.collapseWhitespace("Total:\t\t 42    items  left"))
+                .isEqualTo("Total: 42 items left");
+        assertThat(PromptCompactor.collapseWhitespace("def f():\n    return  1"))
+                .isEqualTo("def f():\n    return 1");
+    }
+
+    @Test
+    void shouldTruncateToTokenBudgetButAlwaysKeepLatestMessage() {
+        llmProperties.getCompaction().setMaxPromptTokens(20);
+
+        PromptCompactor.Result result = compactor.compact(Arrays.asList(
+                message("system", "Rules"),
+                message("user", repeat("old ", 40)),
+                message("assistant", "short"),
+                message("user", repeat("latest ", 40))));
+
+        assertThat(result.getMessages()).hasSize(2);
+        assertThat(result.getMessages().get(0).getContent()).isEqualTo("Rules");
+        assertThat(result.getMessages().get(1).getContent()).startsWith("latest");
+        assertThat(result.getDropped()).hasSize(2);
+    }
+
+    @Test
+    void shouldInsertSummaryAfterLeadingSystemMessages() {
+        List<ChatRequest.Message> messages = compactor.withSummary(
+                Arrays.asList(message("system", "Rules"), message("user", "latest")), "They agreed on Tuesday.");
+
+        assertThat(messages).hasSize(3);
+        assertThat(messages.get(1).getRole()).isEqualTo("system");
+        assertThat(messages.get(1).getContent()).endsWith("They agreed on Tuesday.");
+        assertThat(messages.get(2).getContent()).isEqualTo("latest");
+    }
+
+    private static ChatRequest.Message message(String role, String content) {
+        return ChatRequest.Message.builder().role(role).content(content).build();
+    }
+
+    private static List<String> contents(List<ChatRequest.Message> messages) {
+        return messages.stream().map(ChatRequest.Message::getContent).collect(Collectors.toList());
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
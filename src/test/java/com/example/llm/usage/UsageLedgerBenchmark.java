@@ -0,0 +1,71 @@
+package com.example.llm.usage;
+
+import com.example.llm.config.LlmProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the per-request cost of {@link UsageLedger#record} plus the quota check on the calling
+ * thread, with every thread hitting the same few keys to expose contention.
+ * Not a unit test; run manually, e.g.
+ * {@code java -cp target/test-classes:target/classes:<test classpath>
+ * com.example.llm.usage.UsageLedgerBenchmark [threads]}
+ */
+public final class UsageLedgerBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+    private static final String[] USERS = {"alice", "bob", "carol", "dave"};
+
+    private UsageLedgerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        Path directory = Files.createTempDirectory("usage-benchmark");
+
+        LlmProperties properties = new LlmProperties();
+        properties.getUsage().setEnabled(true);
+        properties.getUsage().setDirectory(directory.toString());
+        properties.getUsage().setDefaultTokenQuota(Long.MAX_VALUE);
+        properties.getUsage().setFlushIntervalMs(1000L);
+        UsageLedger ledger = new UsageLedger(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        ledger.start();
+
+        run(ledger, threads, WARMUP);
+        long nanos = run(ledger, threads, ITERATIONS);
+        ledger.stop();
+
+        long total = (long) threads * ITERATIONS;
+        System.out.printf("threads=%d records=%d avg=%.1f ns/record%n", threads, total, (double) nanos / total);
+    }
+
+    private static long run(UsageLedger ledger, int threads, int iterations) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong elapsed = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    String user = USERS[i & 3];
+                    if (!ledger.isOverQuota(user)) {
+                        ledger.record(user, "openai", "gpt-4o-mini", 24, 8);
+                    }
+                }
+                elapsed.addAndGet(System.nanoTime() - start);
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return elapsed.get();
+    }
+}
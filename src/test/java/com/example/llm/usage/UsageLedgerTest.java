@@ -0,0 +1,189 @@
+package com.example.llm.usage;
+
+import com.example.llm.config.LlmProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageLedgerTest {
+
+    @TempDir
+    Path tempDir;
+    
+    private LlmProperties properties;
+    private UsageLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LlmProperties();
+        properties.getUsage().setEnabled(true);
+        properties.getUsage().setDirectory(tempDir.toString());
+        properties.getUsage().setFlushIntervalMs(60000L);
+        ledger = newLedger();
+        ledger.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledger.stop();
+    }
+
+    @Test
+    void shouldAggregateConcurrentRecordsPerKey() throws InterruptedException {
+        int threads = 4;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ledger.record("alice", "openai", "gpt-4o-mini", 10, 2);
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        ledger.record(null, "ollama", "llama2", 5, 5);
+        
+        List<UsageRecord> alice = ledger.query("alice", null, null, null, null);
+        assertThat(alice).hasSize(1);
+        assertThat(alice.get(0).getRequests()).isEqualTo(threads * perThread);
+        assertThat(alice.get(0).getPromptTokens()).isEqualTo(10L * threads * perThread);
+        assertThat(alice.get(0).getCompletionTokens()).isEqualTo(2L * threads * perThread);
+        
+        assertThat(ledger.query(null, "ollama", null, null, null))
+                .extracting(UsageRecord::getUser)
+                .containsExactly(UsageLedger.ANONYMOUS);
+    }
+
+    @Test
+    void shouldReportQuotaExceededOnceWindowTotalReachesLimit() {
+        ledger.setQuota("bob", 100L);
+        
+        ledger.record("bob", "openai", "gpt-4o-mini", 60, 30);
+        assertThat(ledger.isOverQuota("bob")).isFalse();
+        assertThat(ledger.getQuota("bob").getRemaining()).isEqualTo(10L);
+        
+        ledger.record("bob", "anthropic", "claude-3-haiku", 8, 2);
+        assertThat(ledger.isOverQuota("bob")).isTrue();
+        assertThat(ledger.isOverQuota("carol")).isFalse();
+        
+        ledger.setQuota("bob", null);
+        assertThat(ledger.isOverQuota("bob")).isFalse();
+    }
+
+    @Test
+    void shouldShareOneAccountAndQuotaBetweenUsersBeyondTheLimit() {
+        properties.getUsage().setMaxUsers(2);
+        properties.getUsage().setDefaultTokenQuota(100L);
+        ledger.record("alice", "openai", "gpt-4o-mini", 10, 0);
+        ledger.record("bob", "openai", "gpt-4o-mini", 10, 0);
+        ledger.record("mallory-1", "openai", "gpt-4o-mini", 60, 0);
+        ledger.record("mallory-2", "openai", "gpt-4o-mini", 40, 0);
+        
+        assertThat(ledger.query(null, null, null, null, null))
+                .extracting(UsageRecord::getUser)
+                .containsExactlyInAnyOrder("alice", "bob", UsageLedger.OTHER_USERS);
+        assertThat(ledger.getQuota("mallory-3").getUser()).isEqualTo(UsageLedger.OTHER_USERS);
+        assertThat(ledger.isOverQuota("mallory-3")).isTrue();
+        assertThat(ledger.isOverQuota("alice")).isFalse();
+    }
+
+    @Test
+    void shouldRestoreUsageAndQuotaStateFromFlushedFiles() {
+        properties.getUsage().setDefaultTokenQuota(50L);
+        ledger.record("dave", "openai", "gpt-4o-mini", 20, 10);
+        ledger.record("dave", "openai", "gpt-4o-mini", 15, 5);
+        ledger.stop();
+        
+        UsageLedger restarted = newLedger();
+        restarted.start();
+        try {
+            List<UsageRecord> records = restarted.query("dave", null, null, null, null);
+            assertThat(records).hasSize(1);
+            assertThat(records.get(0).getRequests()).isEqualTo(2);
+            assertThat(records.get(0).getTotalTokens()).isEqualTo(50);
+            assertThat(restarted.isOverQuota("dave")).isTrue();
+        } finally {
+            restarted.stop();
+        }
+    }
+    
+    @Test
+    void shouldCompactRetainedUsageIntoOneFileAndDeleteExpiredFilesAtStartup() throws IOException {
+        ledger.record("erin", "openai", "gpt-4o-mini", 10, 5);
+        ledger.stop();
+        ledger = newLedger();
+        ledger.start();
+        ledger.record("erin", "openai", "gpt-4o-mini", 20, 5);
+        ledger.stop();
+        Path expired = writeExpiredFile("usage-20000101-000000-0.ndjson.gz");
+        assertThat(usageFiles()).hasSize(3);
+        
+        ledger = newLedger();
+        ledger.start();
+        
+        assertThat(usageFiles()).hasSize(1).doesNotContain(expired);
+        List<UsageRecord> records = ledger.query("erin", null, null, null, null);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getRequests()).isEqualTo(2);
+        assertThat(records.get(0).getTotalTokens()).isEqualTo(40);
+        assertThat(ledger.query("old", null, null, null, null)).isEmpty();
+    }
+    
+    @Test
+    void shouldDeleteFilesHoldingOnlyEvictedBucketsOnFlush() throws IOException {
+        ledger.record("frank", "openai", "gpt-4o-mini", 10, 5);
+        Path expired = writeExpiredFile("usage-20000101-000000-0.ndjson.gz");
+        
+        ledger.flush();
+        
+        assertThat(expired).doesNotExist();
+        assertThat(ledger.query("frank", null, null, null, null)).hasSize(1);
+    }
+    
+    private Path writeExpiredFile(String name) throws IOException {
+        Path file = tempDir.resolve(name);
+        UsageRecord record = UsageRecord.builder()
+                .user("old").provider("openai").model("gpt-4o-mini")
+                .bucketStart(0L).requests(1L).promptTokens(1L).completionTokens(1L)
+                .build();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(new ObjectMapper().writeValueAsBytes(record));
+            out.write('\n');
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(TimeUnit.DAYS.toMillis(1)));
+        return file;
+    }
+    
+    private List<Path> usageFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".ndjson.gz"))
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    private UsageLedger newLedger() {
+        return new UsageLedger(properties, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+}
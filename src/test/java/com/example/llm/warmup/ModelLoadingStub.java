@@ -0,0 +1,100 @@
+package com.example.llm.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * OpenAI-compatible {@code /chat/completions} that behaves like a self-hosted server: a model is
+ * loaded on its first request, which takes {@code loadMs}, and unloaded after {@code unloadAfterMs}
+ * without requests on {@code clock}. Requests to a loaded model are answered immediately.
+ */
+class ModelLoadingStub implements Closeable {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long loadMs;
+    private final long unloadAfterMs;
+    private final LongSupplier clock;
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    
+    ModelLoadingStub(long loadMs, long unloadAfterMs, LongSupplier clock) throws IOException {
+        this.loadMs = loadMs;
+        this.unloadAfterMs = unloadAfterMs;
+        this.clock = clock;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        this.server.createContext("/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+    
+    String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+    
+    int loads(String model) {
+        return counter(loads, model).get();
+    }
+    
+    int requests(String model) {
+        return counter(requests, model).get();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        String model;
+        try (InputStream body = exchange.getRequestBody()) {
+            model = objectMapper.readTree(body).path("model").asText();
+        }
+        counter(requests, model).incrementAndGet();
+        
+        // Requests arriving while the model loads wait for the load, as on a real server
+        synchronized (counter(loads, model)) {
+            Long last = lastUsed.get(model);
+            if (last == null || clock.getAsLong() - last > unloadAfterMs) {
+                counter(loads, model).incrementAndGet();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(loadMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            lastUsed.put(model, clock.getAsLong());
+        }
+        
+        byte[] payload = ("{\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion\",\"model\":\"" + model + "\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"ok\"},"
+                + "\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}").getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+    
+    private static AtomicInteger counter(Map<String, AtomicInteger> counters, String model) {
+        return counters.computeIfAbsent(model, name -> new AtomicInteger());
+    }
+}
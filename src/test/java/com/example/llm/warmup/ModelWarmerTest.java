@@ -0,0 +1,220 @@
+package com.example.llm.warmup;
+
+import com.example.llm.config.LlmProperties;
+import com.example.llm.config.ProviderRegistry;
+import com.example.llm.config.ProviderSettings;
+import com.example.llm.config.ProviderSnapshot;
+import com.example.llm.health.ProviderHealthMonitor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelWarmerTest {
+    
+    private static final long LOAD_MS = 300;
+    private static final long UNLOAD_AFTER_MS = 400;
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    
+    private AtomicLong clock;
+    private ModelLoadingStub stub;
+    private LlmProperties properties;
+    private LlmProperties.ProviderConfig ollama;
+    private ProviderRegistry providerRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private WebClient webClient;
+    private ModelWarmer warmer;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        // The stub unloads by the same clock the warmer keeps time with
+        clock = new AtomicLong(System.currentTimeMillis());
+        stub = new ModelLoadingStub(LOAD_MS, UNLOAD_AFTER_MS, clock::get);
+        
+        ollama = new LlmProperties.ProviderConfig();
+        ollama.setEnabled(true);
+        ollama.setBaseUrl(stub.getBaseUrl());
+        ollama.setApiKey("ollama");
+        ollama.setDefaultModel("llama2");
+        ollama.getWarmup().setEnabled(true);
+        ollama.getWarmup().setKeepAliveIntervalMs(150L);
+        ollama.getWarmup().setUnloadAfterMs(UNLOAD_AFTER_MS);
+        ollama.getWarmup().setIdleAfterMs(TimeUnit.MINUTES.toMillis(30));
+        ollama.getWarmup().setPredictMinRequests(1.0);
+        Map<String, LlmProperties.ProviderConfig> providers = new HashMap<>();
+        providers.put("ollama", ollama);
+        
+        properties = new LlmProperties();
+        properties.setProviders(providers);
+        properties.getHealth().setEnabled(false);
+        
+        meterRegistry = new SimpleMeterRegistry();
+        webClient = WebClient.create();
+        providerRegistry = new ProviderRegistry(properties, new StandardEnvironment());
+        providerRegistry.start();
+        warmer = new ModelWarmer(providerRegistry,
+                new ProviderHealthMonitor(properties, providerRegistry, webClient, meterRegistry),
+                webClient, meterRegistry);
+        warmer.setClock(clock::get);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        warmer.stop();
+        stub.close();
+    }
+    
+    @Test
+    void shouldPreloadModelAndKeepItWarmWithKeepAlives() throws Exception {
+        ollama.getWarmup().setPreloadModels(Collections.singletonList("llama2"));
+        providerRegistry.apply(properties, "test");
+        
+        warmer.preload();
+        await(() -> coldLoads("llama2", "warmup") == 1);
+        assertThat(stub.loads("llama2")).isEqualTo(1);
+        
+        // Idle for longer than the server keeps an unused model, with keep-alives running; each
+        // keep-alive completes before the clock moves on
+        for (long idle = 0; idle < 3 * UNLOAD_AFTER_MS; idle += 50) {
+            clock.addAndGet(50);
+            warmer.tick();
+            await(() -> !warmer.isWarming("ollama", "llama2"));
+        }
+        assertThat(stub.loads("llama2")).isEqualTo(1);
+        assertThat(meterRegistry.counter("llm.warmup.requests",
+                "provider", "ollama", "model", "llama2", "reason", ModelWarmer.REASON_KEEPALIVE).count()).isGreaterThan(0);
+        
+        long nanos = request("llama2");
+        warmer.recordRequest("ollama", "llama2", nanos);
+        
+        assertThat(TimeUnit.NANOSECONDS.toMillis(nanos)).isLessThan(LOAD_MS);
+        assertThat(coldLoads("llama2", "request")).isZero();
+        assertThat(meterRegistry.counter("llm.warmup.time.saved", "provider", "ollama", "model", "llama2").count())
+                .isGreaterThanOrEqualTo(LOAD_MS * 0.8);
+    }
+    
+    @Test
+    void shouldRecordColdLoadOfModelThatWasNotWarmed() throws Exception {
+        long nanos = request("mistral");
+        warmer.recordRequest("ollama", "mistral", nanos);
+        
+        // Models the configuration does not name share one metric series
+        assertThat(coldLoads(ProviderSnapshot.OTHER_MODEL, "request")).isEqualTo(1);
+        Timer loadTime = meterRegistry.find("llm.warmup.cold.load.time").tag("model", ProviderSnapshot.OTHER_MODEL).timer();
+        assertThat(loadTime.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(LOAD_MS);
+        assertThat(meterRegistry.find("llm.warmup.time.saved").counter()).isNull();
+    }
+    
+    @Test
+    void shouldWarmModelAheadOfTheHourItIsUsuallyRequested() throws Exception {
+        ollama.getWarmup().setPreloadModels(Collections.singletonList("codellama"));
+        providerRegistry.apply(properties, "test");
+        long day = 20000 * DAY_MS;
+        
+        for (int i = 0; i < 2; i++) {
+            clock.set(day + i * DAY_MS + 10 * HOUR_MS + TimeUnit.MINUTES.toMillis(10));
+            warmer.recordRequest("ollama", "codellama", TimeUnit.MILLISECONDS.toNanos(5));
+            warmer.recordRequest("ollama", "codellama", TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        
+        clock.set(day + 2 * DAY_MS + 9 * HOUR_MS + TimeUnit.MINUTES.toMillis(30));
+        warmer.tick();
+        assertThat(predictedWarmups("codellama")).isZero();
+        
+        clock.set(day + 2 * DAY_MS + 9 * HOUR_MS + TimeUnit.MINUTES.toMillis(57));
+        warmer.tick();
+        assertThat(predictedWarmups("codellama")).isEqualTo(1);
+        await(() -> stub.loads("codellama") == 1);
+    }
+    
+    @Test
+    void shouldKeepOnlyTheMostRecentlyUsedModelsWarm() {
+        clock.set(1_000_000);
+        ollama.getWarmup().setMaxWarmModels(2);
+        ollama.getWarmup().setPreloadModels(Arrays.asList("a", "b", "c"));
+        providerRegistry.apply(properties, "test");
+        for (String model : Arrays.asList("a", "b", "c")) {
+            clock.addAndGet(10);
+            warmer.recordRequest("ollama", model, TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        
+        clock.addAndGet(200);
+        warmer.tick();
+        
+        assertThat(keepAlives("a")).isZero();
+        assertThat(keepAlives("b")).isEqualTo(1);
+        assertThat(keepAlives("c")).isEqualTo(1);
+    }
+    
+    @Test
+    void shouldNotWarmProvidersWithoutWarmupPolicy() {
+        ollama.getWarmup().setEnabled(false);
+        ollama.getWarmup().setPreloadModels(Collections.singletonList("llama2"));
+        providerRegistry.apply(properties, "test");
+        
+        warmer.preload();
+        warmer.recordRequest("ollama", "llama2", TimeUnit.MILLISECONDS.toNanos(5));
+        warmer.tick();
+        
+        assertThat(meterRegistry.find("llm.warmup.requests").counter()).isNull();
+        assertThat(meterRegistry.find("llm.warmup.cold.loads").counter()).isNull();
+    }
+    
+    private long request(String model) {
+        ProviderSettings settings = providerRegistry.current().getProvider("ollama");
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);
+        body.put("messages", Collections.singletonList(Collections.singletonMap("content", "hello")));
+        long start = System.nanoTime();
+        webClient.post()
+                .uri(settings.getChatCompletionsUrl())
+                .headers(settings::applyHeaders)
+                .bodyValue(body)
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+        return System.nanoTime() - start;
+    }
+    
+    private double coldLoads(String model, String source) {
+        Counter counter = meterRegistry.find("llm.warmup.cold.loads").tag("model", model).tag("source", source).counter();
+        return counter != null ? counter.count() : 0;
+    }
+    
+    private double predictedWarmups(String model) {
+        return warmups(model, ModelWarmer.REASON_PREDICTED);
+    }
+    
+    private double keepAlives(String model) {
+        return warmups(model, ModelWarmer.REASON_KEEPALIVE);
+    }
+    
+    private double warmups(String model, String reason) {
+        Counter counter = meterRegistry.find("llm.warmup.requests").tag("model", model).tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}